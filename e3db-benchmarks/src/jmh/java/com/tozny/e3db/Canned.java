@@ -0,0 +1,129 @@
+package com.tozny.e3db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tozny.e3db.crypto.KaliumCrypto;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Clients whose requests are answered with canned responses, in memory, and the JSON for those
+ * responses. Keeps the network out of benchmarks of the client's own work.
+ */
+class Canned {
+  static final Crypto crypto = new KaliumCrypto();
+  static final ObjectMapper mapper = new ObjectMapper();
+  static final String TIMESTAMP = "2017-06-21T22:50:42.437694Z";
+
+  private static final MediaType APPLICATION_JSON = MediaType.parse("application/json");
+  private static final byte[] TOKEN = "{\"access_token\": \"token\", \"token_type\": \"Bearer\", \"expires_in\": 3600}".getBytes();
+
+  private Canned() {
+  }
+
+  /**
+   * A builder for a client whose requests are answered from {@code responses}, by path. Requests for
+   * other paths get a 404.
+   */
+  static ClientBuilder client(UUID clientId, byte[] privateKey, final Map<String, byte[]> responses) {
+    Transport transport = new InMemoryTransport(new InMemoryTransport.Handler() {
+      @Override
+      public Response handle(Request request) {
+        String path = request.url().encodedPath();
+        byte[] body = path.equals("/v1/auth/token") ? TOKEN : responses.get(path);
+        return new Response.Builder()
+          .request(request)
+          .protocol(Protocol.HTTP_1_1)
+          .code(body == null ? 404 : 200)
+          .message(body == null ? "Not Found" : "OK")
+          .body(ResponseBody.create(APPLICATION_JSON, body == null ? new byte[0] : body))
+          .build();
+      }
+    });
+
+    return new ClientBuilder()
+      .setApiKey("key")
+      .setApiSecret("secret")
+      .setClientId(clientId)
+      .setHost("https://e3db.invalid")
+      .setPrivateKey(Base64.encodeURL(privateKey))
+      .setTransport(transport);
+  }
+
+  static ObjectNode meta(UUID writerId, String type) {
+    ObjectNode meta = mapper.createObjectNode();
+    meta.put("record_id", UUID.randomUUID().toString());
+    meta.put("writer_id", writerId.toString());
+    meta.put("user_id", writerId.toString());
+    meta.put("type", type);
+    meta.put("created", TIMESTAMP);
+    meta.put("last_modified", TIMESTAMP);
+    meta.put("version", UUID.randomUUID().toString());
+    meta.putObject("plain").put("source", "benchmark");
+    return meta;
+  }
+
+  /**
+   * Record data with {@code fields} fields, each holding {@code fieldSize} characters, encrypted with {@code accessKey}.
+   */
+  static ObjectNode data(byte[] accessKey, int fields, int fieldSize) throws UnsupportedEncodingException {
+    List<String> values = new ArrayList<>(fields);
+    for (int i = 0; i < fields; i++)
+      values.add(value(i, fieldSize));
+    List<String> encrypted = Client.encryptFields(accessKey, values, crypto);
+
+    ObjectNode data = mapper.createObjectNode();
+    for (int i = 0; i < fields; i++)
+      data.put("field" + i, encrypted.get(i));
+    return data;
+  }
+
+  static String value(int i, int size) {
+    StringBuilder value = new StringBuilder(size);
+    while (value.length() < size)
+      value.append((char) ('a' + (i + value.length()) % 26));
+    return value.toString();
+  }
+
+  /**
+   * A page of search results for {@code readerId}, with rows written by {@code writers} different clients.
+   */
+  static byte[] searchPage(UUID readerId, byte[] readerPublicKey, int rows, int writers, int fields, int fieldSize) throws IOException {
+    ObjectNode[] accessKeys = new ObjectNode[writers];
+    byte[][] aks = new byte[writers][];
+    UUID[] writerIds = new UUID[writers];
+    for (int w = 0; w < writers; w++) {
+      byte[] writerKey = crypto.newPrivateKey();
+      writerIds[w] = UUID.randomUUID();
+      aks[w] = crypto.newSecretKey();
+      accessKeys[w] = mapper.createObjectNode();
+      accessKeys[w].put("eak", crypto.encryptBox(aks[w], readerPublicKey, writerKey).toMessage());
+      accessKeys[w].put("authorizer_id", writerIds[w].toString());
+      accessKeys[w].putObject("authorizer_public_key").put("curve25519", Base64.encodeURL(crypto.getPublicKey(writerKey)));
+    }
+
+    ObjectNode page = mapper.createObjectNode();
+    ArrayNode results = page.putArray("results");
+    for (int i = 0; i < rows; i++) {
+      int w = i % writers;
+      ObjectNode row = results.addObject();
+      row.set("meta", meta(writerIds[w], "benchmark"));
+      row.set("record_data", data(aks[w], fields, fieldSize));
+      row.set("access_key", accessKeys[w]);
+    }
+    page.put("last_index", rows);
+    return mapper.writeValueAsBytes(page);
+  }
+}
@@ -0,0 +1,91 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.crypto.JavaCrypto;
+import com.tozny.e3db.crypto.KaliumCrypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Secret-key (SecretBox) and public-key (Box) encryption, at several message sizes.
+ *
+ * <p>Public-key operations are measured with the shared key cache on (the default) and off, where
+ * each operation repeats the key agreement. {@code provider} compares libsodium (through Kalium)
+ * with the pure-Java implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CryptoBenchmark {
+  @Param({"16", "1024", "65536"})
+  public int size;
+
+  @Param({"kalium", "java"})
+  public String provider;
+
+  private Crypto crypto;
+  private Crypto uncached;
+  private byte[] message;
+  private byte[] secretKey;
+  private byte[] privateKey;
+  private byte[] publicKey;
+  private CipherWithNonce secretBox;
+  private CipherWithNonce box;
+
+  @Setup
+  public void setup() {
+    if ("java".equals(provider)) {
+      crypto = new JavaCrypto();
+      uncached = new JavaCrypto(0);
+    } else {
+      crypto = new KaliumCrypto();
+      uncached = new KaliumCrypto(0);
+    }
+    message = new byte[size];
+    new Random(1).nextBytes(message);
+    secretKey = crypto.newSecretKey();
+    privateKey = crypto.newPrivateKey();
+    publicKey = crypto.getPublicKey(crypto.newPrivateKey());
+    secretBox = crypto.encryptSecretBox(message, secretKey);
+    box = crypto.encryptBox(message, publicKey, privateKey);
+  }
+
+  @Benchmark
+  public CipherWithNonce encryptSecretBox() {
+    return crypto.encryptSecretBox(message, secretKey);
+  }
+
+  @Benchmark
+  public byte[] decryptSecretBox() {
+    return crypto.decryptSecretBox(secretBox, secretKey);
+  }
+
+  @Benchmark
+  public CipherWithNonce encryptBox() {
+    return crypto.encryptBox(message, publicKey, privateKey);
+  }
+
+  @Benchmark
+  public byte[] decryptBox() {
+    return crypto.decryptBox(box, publicKey, privateKey);
+  }
+
+  @Benchmark
+  public CipherWithNonce encryptBoxUncached() {
+    return uncached.encryptBox(message, publicKey, privateKey);
+  }
+
+  @Benchmark
+  public byte[] decryptBoxUncached() {
+    return uncached.decryptBox(box, publicKey, privateKey);
+  }
+}
@@ -0,0 +1,62 @@
+package com.tozny.e3db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64URL encoding, and encoding of ciphertexts with their nonces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EncodingBenchmark {
+  @Param({"32", "1024", "65536"})
+  public int size;
+
+  private byte[] bytes;
+  private String encoded;
+  private CipherWithNonce cipher;
+  private String message;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(1);
+    bytes = new byte[size];
+    random.nextBytes(bytes);
+    encoded = Base64.encodeURL(bytes);
+
+    byte[] nonce = new byte[24];
+    random.nextBytes(nonce);
+    cipher = new CipherWithNonce(bytes, nonce);
+    message = cipher.toMessage();
+  }
+
+  @Benchmark
+  public String encodeURL() {
+    return Base64.encodeURL(bytes);
+  }
+
+  @Benchmark
+  public byte[] decodeURL() {
+    return Base64.decodeURL(encoded);
+  }
+
+  @Benchmark
+  public String toMessage() {
+    return cipher.toMessage();
+  }
+
+  @Benchmark
+  public CipherWithNonce decode() {
+    return CipherWithNonce.decode(message);
+  }
+}
@@ -0,0 +1,70 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.fake.FakeE3DB;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many reads at once against a (fake) server with 5ms of latency, with operations on a
+ * pool of background threads, non-blocking, or on virtual threads.
+ *
+ * <p>Before Java 21, {@code virtualThreads} falls back to the pool; run on Java 21 to compare all three.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExecutionModelBenchmark {
+  private static final int READS = 200;
+
+  @Param({"pool", "nonBlocking", "virtualThreads"})
+  public String mode;
+
+  private Client client;
+  private UUID recordId;
+
+  @Setup
+  public void setup() throws Exception {
+    FakeE3DB e3db = new FakeE3DB();
+    Transport transport = e3db.transport();
+
+    String privateKey = Client.newPrivateKey();
+    ResultFuture<ClientCredentials> registered = new ResultFuture<>();
+    Client.register("token", "benchmark", Client.getPublicKey(privateKey), "https://e3db.invalid", transport, registered.completer());
+
+    client = new ClientBuilder()
+      .fromCredentials(registered.get(), privateKey)
+      .setHost("https://e3db.invalid")
+      .setTransport(transport)
+      .setNonBlocking(mode.equals("nonBlocking"))
+      .setVirtualThreads(mode.equals("virtualThreads"))
+      .setQueueDepth(READS)
+      .build();
+    recordId = client.writeAsync("benchmark", new RecordData(Collections.singletonMap("field", "value")), null).get().meta().recordId();
+
+    e3db.setLatency(5, 0);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(READS)
+  public void reads() throws Exception {
+    List<ResultFuture<Record>> reads = new ArrayList<>(READS);
+    for (int i = 0; i < READS; i++)
+      reads.add(client.readAsync(recordId));
+    for (ResultFuture<Record> read : reads)
+      read.get();
+  }
+}
@@ -0,0 +1,72 @@
+package com.tozny.e3db;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+/**
+ * Encrypting a record into a request body, decrypting a record's fields, and reading record metadata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecordCodecBenchmark {
+  @Param({"1", "10"})
+  public int fields;
+
+  @Param({"16", "1024"})
+  public int fieldSize;
+
+  private Client client;
+  private byte[] accessKey;
+  private Map<String, String> cleartext;
+  private JsonNode data;
+  private JsonNode meta;
+
+  @Setup
+  public void setup() throws IOException {
+    UUID clientId = UUID.randomUUID();
+    client = Canned.client(clientId, Canned.crypto.newPrivateKey(), Collections.<String, byte[]>emptyMap()).build();
+    accessKey = Canned.crypto.newSecretKey();
+
+    cleartext = new HashMap<>();
+    for (int i = 0; i < fields; i++)
+      cleartext.put("field" + i, Canned.value(i, fieldSize));
+    data = Canned.data(accessKey, fields, fieldSize);
+    meta = Canned.meta(clientId, "benchmark");
+  }
+
+  @Benchmark
+  public long encryptRecord() throws IOException {
+    Buffer body = new Buffer();
+    client.recordBody(accessKey, "benchmark", cleartext, null).writeTo(body);
+    return body.size();
+  }
+
+  @Benchmark
+  public Map<String, String> decryptRecord() throws IOException {
+    return Client.decryptObject(accessKey, data, Canned.crypto);
+  }
+
+  @Benchmark
+  public RecordMeta recordMeta() throws ParseException {
+    return Client.getRecordMeta(meta);
+  }
+}
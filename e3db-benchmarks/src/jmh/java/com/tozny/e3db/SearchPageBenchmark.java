@@ -0,0 +1,56 @@
+package com.tozny.e3db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole page of search results, from a canned response: parsing, decrypting access keys, and
+ * decrypting each record.
+ *
+ * <p>The access key cache is off, so each page decrypts one access key per writer (after the first
+ * page, with a cached shared key).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SearchPageBenchmark {
+  @Param({"50", "500"})
+  public int rows;
+
+  @Param({"1", "50"})
+  public int writers;
+
+  @Param({"1", "4"})
+  public int decryptParallelism;
+
+  private Client client;
+  private QueryParams params;
+
+  @Setup
+  public void setup() throws Exception {
+    UUID clientId = UUID.randomUUID();
+    byte[] privateKey = Canned.crypto.newPrivateKey();
+    byte[] page = Canned.searchPage(clientId, Canned.crypto.getPublicKey(privateKey), rows, Math.min(rows, writers), 4, 64);
+
+    client = Canned.client(clientId, privateKey, Collections.singletonMap("/v1/storage/search", page))
+      .setAccessKeyCacheSize(0)
+      .setDecryptParallelism(decryptParallelism)
+      .build();
+    params = new QueryParamsBuilder().setIncludeData(true).setIncludeAllWriters(true).build();
+  }
+
+  @Benchmark
+  public QueryResponse searchPage() throws Exception {
+    return client.queryAsync(params).get();
+  }
+}
@@ -0,0 +1,34 @@
+package com.tozny.e3db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing record timestamps with {@link Iso8601}, against the {@code SimpleDateFormat} it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimestampBenchmark {
+  // One per thread, as a SimpleDateFormat cannot be shared.
+  private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
+
+  @Benchmark
+  public Date iso8601() throws ParseException {
+    return Iso8601.parse(Canned.TIMESTAMP);
+  }
+
+  @Benchmark
+  public Date simpleDateFormat() throws ParseException {
+    return format.parse(Canned.TIMESTAMP);
+  }
+}
@@ -1,13 +1,20 @@
 package com.tozny.e3db.crypto;
 
+import com.tozny.e3db.BufferedRandom;
 import com.tozny.e3db.CipherWithNonce;
 import com.tozny.e3db.Crypto;
+import com.tozny.e3db.SharedKeyCache;
 
 import org.libsodium.jni.NaCl;
 import org.libsodium.jni.Sodium;
-import org.libsodium.jni.crypto.Box;
 import org.libsodium.jni.crypto.Random;
 import org.libsodium.jni.crypto.SecretBox;
+import org.libsodium.jni.crypto.Util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static com.tozny.e3db.Checks.*;
 
@@ -18,12 +25,31 @@ import static org.libsodium.jni.SodiumJNI.crypto_box_keypair;
 
 public class AndroidCrypto implements Crypto {
   private final Sodium sodium;
-  private final Random random;
+  private final BufferedRandom random;
+  private final SharedKeyCache sharedKeys;
 
   public AndroidCrypto() {
+    this(SharedKeyCache.DEFAULT_SIZE);
+  }
+
+  /**
+   * @param sharedKeyCacheSize Number of shared keys (one per pair of public and private keys) to
+   *                           remember for {@link #encryptBox(byte[], byte[], byte[])} and
+   *                           {@link #decryptBox(CipherWithNonce, byte[], byte[])}. 0 disables the cache.
+   */
+  public AndroidCrypto(int sharedKeyCacheSize) {
     // Make sure libsodium initialization occurs.
     sodium = SodiumInit.sodium;
-    random = new Random();
+    final Random source = new Random();
+    random = new BufferedRandom() {
+      @Override
+      protected void fill(byte[] bytes) {
+        byte[] fresh = source.randomBytes(bytes.length);
+        System.arraycopy(fresh, 0, bytes, 0, bytes.length);
+        Arrays.fill(fresh, (byte) 0);
+      }
+    };
+    sharedKeys = new SharedKeyCache(sharedKeyCacheSize);
   }
 
   private static class SodiumInit {
@@ -48,14 +74,59 @@ public class AndroidCrypto implements Crypto {
     return new SecretBox(key).decrypt(message.getNonce(), message.getCipher());
   }
 
+  @Override
+  public List<CipherWithNonce> encryptSecretBoxes(List<byte[]> messages, List<byte[]> keys) {
+    checkNotNull(messages, "messages");
+    checkKeys(keys, messages.size(), "keys");
+    int nonceBytes = crypto_secretbox_noncebytes();
+    byte[] nonces = random.randomBytes(messages.size() * nonceBytes);
+    List<CipherWithNonce> ciphers = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      byte[] message = messages.get(i);
+      checkNotNull(message, "message");
+      byte[] nonce = Arrays.copyOfRange(nonces, i * nonceBytes, (i + 1) * nonceBytes);
+      ciphers.add(new CipherWithNonce(encrypt(message, nonce, keys.get(keys.size() == 1 ? 0 : i)), nonce));
+    }
+    return ciphers;
+  }
+
+  @Override
+  public List<byte[]> decryptSecretBoxes(List<CipherWithNonce> messages, List<byte[]> keys) {
+    checkNotNull(messages, "messages");
+    checkKeys(keys, messages.size(), "keys");
+    List<byte[]> plains = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      CipherWithNonce message = messages.get(i);
+      checkNotNull(message, "message");
+      plains.add(decrypt(message, keys.get(keys.size() == 1 ? 0 : i)));
+    }
+    return plains;
+  }
+
+  @Override
+  public CipherWithNonce encryptSecretBox(ByteBuffer message, byte[] key) {
+    checkNotNull(message, "message");
+    byte[] bytes = new byte[message.remaining()];
+    message.get(bytes);
+    byte[] nonce = random.randomBytes(crypto_secretbox_noncebytes());
+    return new CipherWithNonce(encrypt(bytes, nonce, key), nonce);
+  }
+
+  @Override
+  public int decryptSecretBox(CipherWithNonce message, byte[] key, ByteBuffer destination) {
+    checkNotNull(message, "message");
+    checkNotNull(destination, "destination");
+    byte[] plain = decrypt(message, key);
+    destination.put(plain);
+    return plain.length;
+  }
+
   @Override
   public CipherWithNonce encryptBox(byte[] message, byte[] publicKey, byte[] privateKey) {
     checkNotNull(message, "message");
     checkNotEmpty(publicKey, "publicKey");
     checkNotEmpty(privateKey, "privateKey");
-    byte [] nonce = random.randomBytes(crypto_box_noncebytes());
-    byte[] cipher = new Box(publicKey, privateKey).encrypt(nonce, message);
-    return new CipherWithNonce(cipher, nonce);
+    return encryptBoxPrecomputed(message, sharedKey(publicKey, privateKey));
   }
 
   @Override
@@ -63,7 +134,37 @@ public class AndroidCrypto implements Crypto {
     checkNotNull(message, "message");
     checkNotNull(publicKey, "publicKey");
     checkNotNull(privateKey, "privateKey");
-    return new Box(publicKey, privateKey).decrypt(message.getNonce(), message.getCipher());
+    return decryptBoxPrecomputed(message, sharedKey(publicKey, privateKey));
+  }
+
+  @Override
+  public byte[] precomputeBoxKey(byte[] publicKey, byte[] privateKey) {
+    checkNotEmpty(publicKey, "publicKey");
+    checkNotEmpty(privateKey, "privateKey");
+    Util.checkLength(publicKey, sodium.crypto_box_publickeybytes());
+    Util.checkLength(privateKey, sodium.crypto_box_secretkeybytes());
+    byte[] sharedKey = new byte[sodium.crypto_box_beforenmbytes()];
+    if (sodium.crypto_box_beforenm(sharedKey, publicKey, privateKey) != 0)
+      throw new RuntimeException("Failed to compute shared key.");
+    return sharedKey;
+  }
+
+  // crypto_box_afternm is crypto_secretbox, keyed with the shared key.
+
+  @Override
+  public CipherWithNonce encryptBoxPrecomputed(byte[] message, byte[] sharedKey) {
+    checkNotNull(message, "message");
+    checkNotEmpty(sharedKey, "sharedKey");
+    byte[] nonce = random.randomBytes(crypto_box_noncebytes());
+    byte[] cipher = new SecretBox(sharedKey).encrypt(nonce, message);
+    return new CipherWithNonce(cipher, nonce);
+  }
+
+  @Override
+  public byte[] decryptBoxPrecomputed(CipherWithNonce message, byte[] sharedKey) {
+    checkNotNull(message, "message");
+    checkNotEmpty(sharedKey, "sharedKey");
+    return new SecretBox(sharedKey).decrypt(message.getNonce(), message.getCipher());
   }
 
   @Override
@@ -86,4 +187,50 @@ public class AndroidCrypto implements Crypto {
   public byte[] newSecretKey() {
     return random.randomBytes(crypto_secretbox_keybytes());
   }
+
+  @Override
+  public List<byte[]> newSecretKeys(int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("count: must be greater than or equal to zero.");
+    int keyBytes = crypto_secretbox_keybytes();
+    byte[] bytes = random.randomBytes(count * keyBytes);
+    List<byte[]> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      keys.add(Arrays.copyOfRange(bytes, i * keyBytes, (i + 1) * keyBytes));
+    return keys;
+  }
+
+  // The "easy" secretbox functions need no zero padding, so each message is encrypted (or decrypted)
+  // with a single allocation.
+
+  private byte[] encrypt(byte[] message, byte[] nonce, byte[] key) {
+    checkNotEmpty(key, "key");
+    Util.checkLength(key, crypto_secretbox_keybytes());
+    byte[] cipher = new byte[sodium.crypto_secretbox_macbytes() + message.length];
+    if (sodium.crypto_secretbox_easy(cipher, message, message.length, nonce, key) != 0)
+      throw new RuntimeException("Encryption failed");
+    return cipher;
+  }
+
+  private byte[] decrypt(CipherWithNonce message, byte[] key) {
+    checkNotEmpty(key, "key");
+    Util.checkLength(key, crypto_secretbox_keybytes());
+    byte[] cipher = message.getCipher();
+    int plainLength = cipher.length - sodium.crypto_secretbox_macbytes();
+    if (plainLength < 0)
+      throw new RuntimeException("Decryption failed. Ciphertext failed verification");
+    byte[] plain = new byte[plainLength];
+    if (sodium.crypto_secretbox_open_easy(plain, cipher, cipher.length, message.getNonce(), key) != 0)
+      throw new RuntimeException("Decryption failed. Ciphertext failed verification");
+    return plain;
+  }
+
+  private byte[] sharedKey(byte[] publicKey, byte[] privateKey) {
+    byte[] sharedKey = sharedKeys.get(publicKey, privateKey);
+    if (sharedKey == null) {
+      sharedKey = precomputeBoxKey(publicKey, privateKey);
+      sharedKeys.put(publicKey, privateKey, sharedKey);
+    }
+    return sharedKey;
+  }
 }
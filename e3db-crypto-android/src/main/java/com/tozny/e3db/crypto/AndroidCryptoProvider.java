@@ -0,0 +1,24 @@
+package com.tozny.e3db.crypto;
+
+import com.tozny.e3db.Crypto;
+import com.tozny.e3db.CryptoProvider;
+
+/**
+ * Registers {@link AndroidCrypto}, which uses libsodium through JNI; preferred wherever it loads.
+ */
+public class AndroidCryptoProvider implements CryptoProvider {
+  @Override
+  public String name() {
+    return "android";
+  }
+
+  @Override
+  public int priority() {
+    return 200;
+  }
+
+  @Override
+  public Crypto create() {
+    return new AndroidCrypto();
+  }
+}
@@ -0,0 +1,123 @@
+package com.tozny.e3db;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Hands out cryptographically secure random bytes (nonces and keys) from buffers filled in large
+ * blocks by the operating system's CSPRNG, so that each small request does not cost a call into it.
+ *
+ * <p>Buffers are striped by thread, so threads rarely contend for one. Bytes are zeroed in the buffer
+ * as they are handed out and never handed out twice. A buffer is discarded and refilled when it runs
+ * out, after {@link #reseed()}, and when the process has forked since it was filled (Android starts
+ * applications by forking a zygote process, which would otherwise share its buffered bytes with every
+ * application). Requests larger than a quarter of a buffer go straight to the source.
+ *
+ * <p>Subclasses implement {@link #fill(byte[])} with the operating system's random source.
+ */
+public abstract class BufferedRandom {
+  /**
+   * Default number of bytes buffered per stripe.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+  private static final Method myPid = myPid();
+
+  private final int bufferSize;
+  private final Stripe[] stripes;
+
+  protected BufferedRandom() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param bufferSize Number of bytes to buffer per stripe. 0 disables buffering.
+   */
+  protected BufferedRandom(int bufferSize) {
+    if (bufferSize < 0)
+      throw new IllegalArgumentException("bufferSize: must be greater than or equal to zero.");
+    this.bufferSize = bufferSize;
+    int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+    this.stripes = new Stripe[count];
+    for (int i = 0; i < count; i++)
+      stripes[i] = new Stripe();
+  }
+
+  /**
+   * Fills {@code bytes} entirely from the underlying CSPRNG.
+   */
+  protected abstract void fill(byte[] bytes);
+
+  /**
+   * Returns {@code count} random bytes.
+   */
+  public byte[] randomBytes(int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("count: must be greater than or equal to zero.");
+    byte[] bytes = new byte[count];
+    if (count == 0)
+      return bytes;
+    if (count > bufferSize / 4) {
+      fill(bytes);
+      return bytes;
+    }
+
+    int pid = pid();
+    Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+    synchronized (stripe) {
+      if (stripe.pid != pid || bufferSize - stripe.position < count) {
+        if (stripe.buffer == null)
+          stripe.buffer = new byte[bufferSize];
+        // Empty until the fill succeeds.
+        stripe.position = bufferSize;
+        fill(stripe.buffer);
+        stripe.position = 0;
+        stripe.pid = pid;
+      }
+      System.arraycopy(stripe.buffer, stripe.position, bytes, 0, count);
+      Arrays.fill(stripe.buffer, stripe.position, stripe.position + count, (byte) 0);
+      stripe.position += count;
+    }
+    return bytes;
+  }
+
+  /**
+   * Discards all buffered bytes, so that later requests are answered with bytes drawn from the
+   * source after this call. Use after restoring a snapshot of the process (for example, a virtual
+   * machine image), which a fork check cannot detect.
+   */
+  public void reseed() {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        if (stripe.buffer != null)
+          Arrays.fill(stripe.buffer, (byte) 0);
+        stripe.position = bufferSize;
+      }
+    }
+  }
+
+  // The JVM cannot fork, so outside Android the process ID never changes.
+  private static int pid() {
+    if (myPid == null)
+      return 0;
+    try {
+      return (Integer) myPid.invoke(null);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Method myPid() {
+    try {
+      return Class.forName("android.os.Process").getMethod("myPid");
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private final class Stripe {
+    byte[] buffer;
+    int position = bufferSize;
+    int pid;
+  }
+}
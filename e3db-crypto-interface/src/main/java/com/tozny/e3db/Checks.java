@@ -1,5 +1,6 @@
 package com.tozny.e3db;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -43,4 +44,14 @@ public class Checks {
       checkNotNull(entries.getValue(), name + ": (map): field value");
     }
   }
+
+  /**
+   * Throws if the given list of keys does not hold either exactly one key, or one key for
+   * each of {@code count} messages.
+   */
+  public static void checkKeys(List<byte[]> keys, int count, String name) {
+    checkNotNull(keys, name);
+    if(keys.size() != 1 && keys.size() != count)
+      throw new IllegalArgumentException(name + ": (list): must hold one key, or one key per message.");
+  }
 }
@@ -1,5 +1,8 @@
 package com.tozny.e3db;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 /**
  * Provides cryptographic operations necessary for interacting with E3DB. Android and
  * plain Java implementations of this class are automatically included in each respective
@@ -26,8 +29,56 @@ public interface Crypto {
    */
   byte[] decryptSecretBox(CipherWithNonce message, byte [] key);
 
+  /**
+   * Encrypts several messages in one call. Equivalent to calling {@link #encryptSecretBox(byte[], byte[])}
+   * for each message, but with less overhead per message (for example, nonces for all messages
+   * are generated at once).
+   *
+   * @param messages Bytes to encrypt. Each can be empty but not null.
+   * @param keys Secret keys to encrypt with: either a single key, used for every message, or one key per message.
+   * @return The encrypted messages (each with its own nonce), in the same order as {@code messages}.
+   */
+  List<CipherWithNonce> encryptSecretBoxes(List<byte[]> messages, List<byte[]> keys);
+
+  /**
+   * Decrypts several messages in one call. Equivalent to calling {@link #decryptSecretBox(CipherWithNonce, byte[])}
+   * for each message. Throws if any message fails to decrypt.
+   *
+   * @param messages Messages to decrypt, each along with the nonce used during encryption.
+   * @param keys Secret keys for decryption: either a single key, used for every message, or one key per message.
+   * @return The decrypted bytes, in the same order as {@code messages}.
+   */
+  List<byte[]> decryptSecretBoxes(List<CipherWithNonce> messages, List<byte[]> keys);
+
+  /**
+   * Encrypts the remaining bytes of a buffer using the secret key given. The buffer's position is
+   * advanced to its limit.
+   *
+   * @param message Bytes to encrypt. May be a direct buffer.
+   * @param key Secret key to encrypt with. Must be a 32-byte array.
+   * @return The encrypted message and a nonce used during encryption.
+   */
+  CipherWithNonce encryptSecretBox(ByteBuffer message, byte[] key);
+
+  /**
+   * Decrypts a message encrypted with a secret key into the given buffer, starting at its position. The
+   * buffer's position is advanced past the decrypted bytes.
+   *
+   * @param message Message to decrypt, along with the nonce used during encryption.
+   * @param key Secret key for decryption.
+   * @param destination Receives the decrypted bytes. May be a direct buffer. Throws
+   *                    {@link java.nio.BufferOverflowException} if too little space remains.
+   * @return The number of decrypted bytes.
+   */
+  int decryptSecretBox(CipherWithNonce message, byte[] key, ByteBuffer destination);
+
   /**
    * Encrypt a message using public-key cryptography.
+   *
+   * <p>Implementations may cache the key shared by {@code publicKey} and {@code privateKey} (see
+   * {@link #precomputeBoxKey(byte[], byte[])}), so repeated messages between the same pair cost only
+   * a symmetric encryption.
+   *
    * @param message Bytes to encrypt. Can be empty but never null.
    * @param publicKey The public key of the recipient. A 32-byte array.
    * @param privateKey Private key of the sender. A 32-byte array. Private keys can be generated
@@ -39,6 +90,8 @@ public interface Crypto {
   /**
    * Decrypt a message for a given recipient.
    *
+   * <p>As with {@link #encryptBox(byte[], byte[], byte[])}, implementations may cache the shared key.
+   *
    * @param message Message to decrypt, plus a nonce used during encryption.
    * @param publicKey Public key of the sender (for authentication). A 32-byte array.
    * @param privateKey Private key of the recipient. A 32-byte array. Private keys can be generated
@@ -47,6 +100,40 @@ public interface Crypto {
    */
   byte[] decryptBox(CipherWithNonce message, byte[] publicKey, byte[] privateKey);
 
+  /**
+   * Compute the key shared by a pair of public and private keys (NaCl's {@code crypto_box_beforenm}). Messages
+   * encrypted with {@link #encryptBoxPrecomputed(byte[], byte[])} and the shared key can be decrypted
+   * with {@link #decryptBox(CipherWithNonce, byte[], byte[])}, and vice versa, without repeating the
+   * (comparatively expensive) key agreement for each message.
+   *
+   * <p>The shared key must be kept as secret as the private key.
+   *
+   * @param publicKey Public key of the peer. A 32-byte array.
+   * @param privateKey Our own private key. A 32-byte array.
+   * @return The shared key. A 32-byte array.
+   */
+  byte[] precomputeBoxKey(byte[] publicKey, byte[] privateKey);
+
+  /**
+   * Encrypt a message using a shared key computed with {@link #precomputeBoxKey(byte[], byte[])}
+   * (NaCl's {@code crypto_box_afternm}).
+   *
+   * @param message Bytes to encrypt. Can be empty but never null.
+   * @param sharedKey Key shared between sender and recipient.
+   * @return The encrypted message plus a nonce used during encryption.
+   */
+  CipherWithNonce encryptBoxPrecomputed(byte[] message, byte[] sharedKey);
+
+  /**
+   * Decrypt a message using a shared key computed with {@link #precomputeBoxKey(byte[], byte[])}
+   * (NaCl's {@code crypto_box_open_afternm}).
+   *
+   * @param message Message to decrypt, plus a nonce used during encryption.
+   * @param sharedKey Key shared between sender and recipient.
+   * @return The decrypted message, or throws if decryption fails.
+   */
+  byte[] decryptBoxPrecomputed(CipherWithNonce message, byte[] sharedKey);
+
   /**
    * Extract the public key from a given private key.
    * @param privateKey A 32-byte array. Private keys can be generated withw {@link #newPrivateKey()}).
@@ -66,4 +153,11 @@ public interface Crypto {
    * @return A new secret key.
    */
   byte[] newSecretKey();
+
+  /**
+   * Generate several new secret keys at once. Equivalent to calling {@link #newSecretKey()} {@code count} times.
+   * @param count Number of keys. Must be greater than or equal to zero.
+   * @return New secret keys.
+   */
+  List<byte[]> newSecretKeys(int count);
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.tozny.e3db;
+
+/**
+ * Makes a {@link Crypto} implementation available to E3DB clients.
+ *
+ * <p>Providers are found with {@link java.util.ServiceLoader}: each crypto library lists its provider in
+ * {@code META-INF/services/com.tozny.e3db.CryptoProvider}. A provider may be present on a platform where
+ * its implementation cannot run (for example, when a native library is missing); in that case
+ * {@link #create()}, or the first operation on the instance it returns, throws.
+ */
+public interface CryptoProvider {
+  /**
+   * Short, unique name for the implementation, such as {@code "kalium"}.
+   */
+  String name();
+
+  /**
+   * Preference for this provider when no other is configured. The available provider with the
+   * highest priority is used by default.
+   */
+  int priority();
+
+  /**
+   * Creates a new instance of the implementation.
+   */
+  Crypto create();
+}
@@ -0,0 +1,112 @@
+package com.tozny.e3db;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okio.ByteString;
+
+import static com.tozny.e3db.Checks.*;
+
+/**
+ * Holds precomputed shared keys (see {@link Crypto#precomputeBoxKey(byte[], byte[])}), keyed
+ * by the peer's public key and our own private key, so that repeated public-key operations with
+ * the same peer skip the Curve25519 scalar multiplication.
+ *
+ * <p>Entries are keyed by a SHA-256 hash of the two keys, so the cache never holds a copy of a
+ * private key.
+ *
+ * <p>The least-recently used entry is evicted when the cache grows past its maximum size. A maximum
+ * size of 0 disables caching.
+ *
+ * <p>Used by {@link Crypto} implementations; not needed by applications.
+ */
+public class SharedKeyCache {
+  /**
+   * Default maximum number of shared keys held.
+   */
+  public static final int DEFAULT_SIZE = 256;
+
+  private final int maxEntries;
+  private final LinkedHashMap<ByteString, byte[]> entries;
+
+  /**
+   * Create a cache holding at most {@code maxEntries} shared keys.
+   *
+   * @param maxEntries Must be greater than or equal to zero.
+   */
+  public SharedKeyCache(final int maxEntries) {
+    if (maxEntries < 0)
+      throw new IllegalArgumentException("maxEntries: must be greater than or equal to zero.");
+    this.maxEntries = maxEntries;
+    // Access-ordered, so the eldest entry is always the least-recently used one.
+    this.entries = new LinkedHashMap<ByteString, byte[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ByteString, byte[]> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the shared key for the given pair of keys, or {@code null} if none is held.
+   */
+  public byte[] get(byte[] publicKey, byte[] privateKey) {
+    checkNotEmpty(publicKey, "publicKey");
+    checkNotEmpty(privateKey, "privateKey");
+    if (maxEntries == 0)
+      return null;
+
+    ByteString key = key(publicKey, privateKey);
+    synchronized (entries) {
+      return entries.get(key);
+    }
+  }
+
+  /**
+   * Remember the shared key computed for the given pair of keys.
+   */
+  public void put(byte[] publicKey, byte[] privateKey, byte[] sharedKey) {
+    checkNotEmpty(publicKey, "publicKey");
+    checkNotEmpty(privateKey, "privateKey");
+    checkNotEmpty(sharedKey, "sharedKey");
+    if (maxEntries == 0)
+      return;
+
+    ByteString key = key(publicKey, privateKey);
+    synchronized (entries) {
+      entries.put(key, sharedKey);
+    }
+  }
+
+  /**
+   * Number of shared keys held.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Discard all shared keys held.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  private static ByteString key(byte[] publicKey, byte[] privateKey) {
+    MessageDigest sha256;
+    try {
+      sha256 = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    sha256.update(publicKey);
+    sha256.update(privateKey);
+    return ByteString.of(sha256.digest());
+  }
+}
@@ -0,0 +1,176 @@
+package com.tozny.e3db.crypto;
+
+/**
+ * X25519 (Curve25519 Diffie-Hellman, RFC 7748), as used by NaCl's {@code crypto_scalarmult_curve25519}.
+ *
+ * <p>Field elements are sixteen 16-bit limbs held in {@code long}s (after TweetNaCl). The Montgomery
+ * ladder runs in constant time: it swaps by masking, never by branching on secret bits. Each
+ * instance holds the scratch space for one multiplication at a time, so that the ladder allocates
+ * nothing.
+ */
+final class Curve25519 {
+  static final int KEY_BYTES = 32;
+
+  private static final byte[] BASE_POINT = new byte[32];
+  private static final long[] A24 = new long[] { 0xdb41, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+  static {
+    BASE_POINT[0] = 9;
+  }
+
+  private final long[] t = new long[31];
+  private final long[] a = new long[16], b = new long[16], c = new long[16], d = new long[16];
+  private final long[] e = new long[16], f = new long[16], x = new long[16];
+
+  /**
+   * The public key for a 32-byte private key.
+   */
+  static byte[] publicKey(byte[] privateKey) {
+    return scalarMult(privateKey, BASE_POINT);
+  }
+
+  /**
+   * The 32-byte shared secret of a private key (scalar) and a peer's public key (point).
+   */
+  static byte[] scalarMult(byte[] scalar, byte[] point) {
+    byte[] out = new byte[32];
+    new Curve25519().ladder(out, scalar, point);
+    return out;
+  }
+
+  private void ladder(byte[] out, byte[] n, byte[] p) {
+    byte[] z = new byte[32];
+    System.arraycopy(n, 0, z, 0, 32);
+    z[31] = (byte) ((n[31] & 127) | 64);
+    z[0] &= (byte) 248;
+
+    unpack(x, p);
+    for (int i = 0; i < 16; i++) {
+      b[i] = x[i];
+      a[i] = c[i] = d[i] = 0;
+    }
+    a[0] = d[0] = 1;
+
+    for (int i = 254; i >= 0; --i) {
+      int r = ((z[i >>> 3] & 0xff) >>> (i & 7)) & 1;
+      swap(a, b, r);
+      swap(c, d, r);
+      add(e, a, c);
+      sub(a, a, c);
+      add(c, b, d);
+      sub(b, b, d);
+      mul(d, e, e);
+      mul(f, a, a);
+      mul(a, c, a);
+      mul(c, b, e);
+      add(e, a, c);
+      sub(a, a, c);
+      mul(b, a, a);
+      sub(c, d, f);
+      mul(a, c, A24);
+      add(a, a, d);
+      mul(c, c, a);
+      mul(a, d, f);
+      mul(d, b, x);
+      mul(b, e, e);
+      swap(a, b, r);
+      swap(c, d, r);
+    }
+
+    invert(c, c);
+    mul(a, a, c);
+    pack(out, a);
+  }
+
+  private static void carry(long[] o) {
+    for (int i = 0; i < 16; i++) {
+      o[i] += 1L << 16;
+      long carry = o[i] >> 16;
+      if (i < 15)
+        o[i + 1] += carry - 1;
+      else
+        o[0] += 38 * (carry - 1);
+      o[i] -= carry << 16;
+    }
+  }
+
+  // Swaps p and q if bit is 1, leaves them if 0.
+  private static void swap(long[] p, long[] q, int bit) {
+    long mask = -bit;
+    for (int i = 0; i < 16; i++) {
+      long t = mask & (p[i] ^ q[i]);
+      p[i] ^= t;
+      q[i] ^= t;
+    }
+  }
+
+  private static void pack(byte[] o, long[] n) {
+    long[] m = new long[16];
+    long[] v = new long[16];
+    System.arraycopy(n, 0, v, 0, 16);
+    carry(v);
+    carry(v);
+    carry(v);
+    // Subtract p (twice at most), keeping the result only if it does not go negative.
+    for (int j = 0; j < 2; j++) {
+      m[0] = v[0] - 0xffed;
+      for (int i = 1; i < 15; i++) {
+        m[i] = v[i] - 0xffff - ((m[i - 1] >> 16) & 1);
+        m[i - 1] &= 0xffff;
+      }
+      m[15] = v[15] - 0x7fff - ((m[14] >> 16) & 1);
+      int borrow = (int) ((m[15] >> 16) & 1);
+      m[14] &= 0xffff;
+      swap(v, m, 1 - borrow);
+    }
+    for (int i = 0; i < 16; i++) {
+      o[2 * i] = (byte) v[i];
+      o[2 * i + 1] = (byte) (v[i] >> 8);
+    }
+  }
+
+  private static void unpack(long[] o, byte[] n) {
+    for (int i = 0; i < 16; i++)
+      o[i] = (n[2 * i] & 0xff) + ((long) (n[2 * i + 1] & 0xff) << 8);
+    o[15] &= 0x7fff;
+  }
+
+  private static void add(long[] o, long[] a, long[] b) {
+    for (int i = 0; i < 16; i++)
+      o[i] = a[i] + b[i];
+  }
+
+  private static void sub(long[] o, long[] a, long[] b) {
+    for (int i = 0; i < 16; i++)
+      o[i] = a[i] - b[i];
+  }
+
+  // o may be the same array as a or b.
+  private void mul(long[] o, long[] a, long[] b) {
+    long[] t = this.t;
+    for (int i = 0; i < 31; i++)
+      t[i] = 0;
+    for (int i = 0; i < 16; i++) {
+      long ai = a[i];
+      for (int j = 0; j < 16; j++)
+        t[i + j] += ai * b[j];
+    }
+    for (int i = 0; i < 15; i++)
+      t[i] += 38 * t[i + 16];
+    System.arraycopy(t, 0, o, 0, 16);
+    carry(o);
+    carry(o);
+  }
+
+  // o = i^(p - 2).
+  private void invert(long[] o, long[] i) {
+    long[] r = new long[16];
+    System.arraycopy(i, 0, r, 0, 16);
+    for (int k = 253; k >= 0; k--) {
+      mul(r, r, r);
+      if (k != 2 && k != 4)
+        mul(r, r, i);
+    }
+    System.arraycopy(r, 0, o, 0, 16);
+  }
+}
@@ -0,0 +1,192 @@
+package com.tozny.e3db.crypto;
+
+import com.tozny.e3db.BufferedRandom;
+import com.tozny.e3db.CipherWithNonce;
+import com.tozny.e3db.Crypto;
+import com.tozny.e3db.SharedKeyCache;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tozny.e3db.Checks.*;
+
+/**
+ * Implements E3DB's crypto operations (NaCl's XSalsa20-Poly1305 secret boxes and Curve25519 public-key
+ * boxes) entirely in Java, without loading a native library.
+ *
+ * <p>Produces and accepts exactly the same ciphertexts and keys as {@code KaliumCrypto} and
+ * {@code AndroidCrypto}.
+ */
+public class JavaCrypto implements Crypto {
+  private static final SecureRandom secureRandom = new SecureRandom();
+  private static final BufferedRandom random = new BufferedRandom() {
+    @Override
+    protected void fill(byte[] bytes) {
+      secureRandom.nextBytes(bytes);
+    }
+  };
+  private static final byte[] ZERO_NONCE = new byte[16];
+
+  private final SharedKeyCache sharedKeys;
+
+  public JavaCrypto() {
+    this(SharedKeyCache.DEFAULT_SIZE);
+  }
+
+  /**
+   * @param sharedKeyCacheSize Number of shared keys (one per pair of public and private keys) to
+   *                           remember for {@link #encryptBox(byte[], byte[], byte[])} and
+   *                           {@link #decryptBox(CipherWithNonce, byte[], byte[])}. 0 disables the cache.
+   */
+  public JavaCrypto(int sharedKeyCacheSize) {
+    this.sharedKeys = new SharedKeyCache(sharedKeyCacheSize);
+  }
+
+  @Override
+  public CipherWithNonce encryptSecretBox(byte[] message, byte[] key) {
+    checkNotNull(message, "message");
+    checkNotEmpty(key, "key");
+    byte[] nonce = randomBytes(XSalsa20Poly1305.NONCE_BYTES);
+    return new CipherWithNonce(XSalsa20Poly1305.seal(message, 0, message.length, nonce, key), nonce);
+  }
+
+  @Override
+  public byte[] decryptSecretBox(CipherWithNonce message, byte[] key) {
+    checkNotNull(message, "message");
+    checkNotEmpty(key, "key");
+    return XSalsa20Poly1305.open(message.getCipher(), message.getNonce(), key);
+  }
+
+  @Override
+  public List<CipherWithNonce> encryptSecretBoxes(List<byte[]> messages, List<byte[]> keys) {
+    checkNotNull(messages, "messages");
+    checkKeys(keys, messages.size(), "keys");
+    List<CipherWithNonce> ciphers = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      byte[] key = keys.get(keys.size() == 1 ? 0 : i);
+      checkNotEmpty(key, "key");
+      ciphers.add(encryptSecretBox(messages.get(i), key));
+    }
+    return ciphers;
+  }
+
+  @Override
+  public List<byte[]> decryptSecretBoxes(List<CipherWithNonce> messages, List<byte[]> keys) {
+    checkNotNull(messages, "messages");
+    checkKeys(keys, messages.size(), "keys");
+    List<byte[]> plains = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++)
+      plains.add(decryptSecretBox(messages.get(i), keys.get(keys.size() == 1 ? 0 : i)));
+    return plains;
+  }
+
+  @Override
+  public CipherWithNonce encryptSecretBox(ByteBuffer message, byte[] key) {
+    checkNotNull(message, "message");
+    checkNotEmpty(key, "key");
+    byte[] nonce = randomBytes(XSalsa20Poly1305.NONCE_BYTES);
+    if (message.hasArray()) {
+      int len = message.remaining();
+      byte[] box = XSalsa20Poly1305.seal(message.array(), message.arrayOffset() + message.position(), len, nonce, key);
+      message.position(message.limit());
+      return new CipherWithNonce(box, nonce);
+    }
+
+    byte[] bytes = new byte[message.remaining()];
+    message.get(bytes);
+    return new CipherWithNonce(XSalsa20Poly1305.seal(bytes, 0, bytes.length, nonce, key), nonce);
+  }
+
+  @Override
+  public int decryptSecretBox(CipherWithNonce message, byte[] key, ByteBuffer destination) {
+    checkNotNull(destination, "destination");
+    byte[] plain = decryptSecretBox(message, key);
+    destination.put(plain);
+    return plain.length;
+  }
+
+  @Override
+  public CipherWithNonce encryptBox(byte[] message, byte[] publicKey, byte[] privateKey) {
+    checkNotNull(message, "message");
+    checkNotEmpty(publicKey, "publicKey");
+    checkNotEmpty(privateKey, "privateKey");
+    return encryptBoxPrecomputed(message, sharedKey(publicKey, privateKey));
+  }
+
+  @Override
+  public byte[] decryptBox(CipherWithNonce message, byte[] publicKey, byte[] privateKey) {
+    checkNotNull(message, "message");
+    checkNotNull(publicKey, "publicKey");
+    checkNotNull(privateKey, "privateKey");
+    return decryptBoxPrecomputed(message, sharedKey(publicKey, privateKey));
+  }
+
+  @Override
+  public byte[] precomputeBoxKey(byte[] publicKey, byte[] privateKey) {
+    checkKey(publicKey, "publicKey");
+    checkKey(privateKey, "privateKey");
+    // crypto_box_beforenm: HSalsa20 of the X25519 shared secret, with a zero nonce.
+    int[] words = new int[8];
+    Salsa20.hsalsa20(words, Curve25519.scalarMult(privateKey, publicKey), ZERO_NONCE);
+    byte[] sharedKey = new byte[XSalsa20Poly1305.KEY_BYTES];
+    Salsa20.bytes(words, sharedKey, sharedKey.length);
+    return sharedKey;
+  }
+
+  @Override
+  public CipherWithNonce encryptBoxPrecomputed(byte[] message, byte[] sharedKey) {
+    return encryptSecretBox(message, sharedKey);
+  }
+
+  @Override
+  public byte[] decryptBoxPrecomputed(CipherWithNonce message, byte[] sharedKey) {
+    return decryptSecretBox(message, sharedKey);
+  }
+
+  @Override
+  public byte[] getPublicKey(byte[] privateKey) {
+    checkKey(privateKey, "privateKey");
+    return Curve25519.publicKey(privateKey);
+  }
+
+  @Override
+  public byte[] newPrivateKey() {
+    return randomBytes(Curve25519.KEY_BYTES);
+  }
+
+  @Override
+  public byte[] newSecretKey() {
+    return randomBytes(XSalsa20Poly1305.KEY_BYTES);
+  }
+
+  @Override
+  public List<byte[]> newSecretKeys(int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("count: must be greater than or equal to zero.");
+    List<byte[]> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      keys.add(newSecretKey());
+    return keys;
+  }
+
+  private static byte[] randomBytes(int count) {
+    return random.randomBytes(count);
+  }
+
+  private static void checkKey(byte[] key, String name) {
+    checkNotEmpty(key, name);
+    if (key.length != Curve25519.KEY_BYTES)
+      throw new RuntimeException("Invalid size: " + key.length);
+  }
+
+  private byte[] sharedKey(byte[] publicKey, byte[] privateKey) {
+    byte[] sharedKey = sharedKeys.get(publicKey, privateKey);
+    if (sharedKey == null) {
+      sharedKey = precomputeBoxKey(publicKey, privateKey);
+      sharedKeys.put(publicKey, privateKey, sharedKey);
+    }
+    return sharedKey;
+  }
+}
@@ -0,0 +1,25 @@
+package com.tozny.e3db.crypto;
+
+import com.tozny.e3db.Crypto;
+import com.tozny.e3db.CryptoProvider;
+
+/**
+ * Registers {@link JavaCrypto}. It needs no native library, so it is the fallback when no other
+ * provider can run.
+ */
+public class JavaCryptoProvider implements CryptoProvider {
+  @Override
+  public String name() {
+    return "java";
+  }
+
+  @Override
+  public int priority() {
+    return 0;
+  }
+
+  @Override
+  public Crypto create() {
+    return new JavaCrypto();
+  }
+}
@@ -0,0 +1,136 @@
+package com.tozny.e3db.crypto;
+
+/**
+ * The Poly1305 one-time authenticator, as used by NaCl's {@code crypto_onetimeauth_poly1305}.
+ *
+ * <p>Arithmetic uses five 26-bit limbs held in {@code long}s (after poly1305-donna), so that
+ * products never overflow and no big-integer arithmetic is needed.
+ */
+final class Poly1305 {
+  static final int KEY_BYTES = 32;
+  static final int MAC_BYTES = 16;
+
+  private static final long MASK26 = 0x3ffffff;
+
+  private Poly1305() {
+  }
+
+  /**
+   * Writes the 16-byte authenticator of {@code len} bytes of {@code m} (starting at {@code off}), under
+   * the 32-byte one-time key, to {@code out} at {@code outOff}.
+   */
+  static void mac(byte[] out, int outOff, byte[] m, int off, int len, byte[] key) {
+    // r, clamped.
+    long r0 = load(key, 0) & 0x3ffffff;
+    long r1 = (load(key, 3) >>> 2) & 0x3ffff03;
+    long r2 = (load(key, 6) >>> 4) & 0x3ffc0ff;
+    long r3 = (load(key, 9) >>> 6) & 0x3f03fff;
+    long r4 = (load(key, 12) >>> 8) & 0x00fffff;
+    long s1 = r1 * 5, s2 = r2 * 5, s3 = r3 * 5, s4 = r4 * 5;
+
+    long h0 = 0, h1 = 0, h2 = 0, h3 = 0, h4 = 0;
+    while (len > 0) {
+      long hibit;
+      byte[] b;
+      int p;
+      if (len >= 16) {
+        b = m;
+        p = off;
+        hibit = 1L << 24;
+        off += 16;
+        len -= 16;
+      } else {
+        // Final partial block: the message bytes, then a 1 byte, then zeros.
+        byte[] last = new byte[16];
+        System.arraycopy(m, off, last, 0, len);
+        last[len] = 1;
+        b = last;
+        p = 0;
+        hibit = 0;
+        len = 0;
+      }
+
+      h0 += load(b, p) & MASK26;
+      h1 += (load(b, p + 3) >>> 2) & MASK26;
+      h2 += (load(b, p + 6) >>> 4) & MASK26;
+      h3 += (load(b, p + 9) >>> 6) & MASK26;
+      h4 += (load(b, p + 12) >>> 8) | hibit;
+
+      long d0 = h0 * r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+      long d1 = h0 * r1 + h1 * r0 + h2 * s4 + h3 * s3 + h4 * s2;
+      long d2 = h0 * r2 + h1 * r1 + h2 * r0 + h3 * s4 + h4 * s3;
+      long d3 = h0 * r3 + h1 * r2 + h2 * r1 + h3 * r0 + h4 * s4;
+      long d4 = h0 * r4 + h1 * r3 + h2 * r2 + h3 * r1 + h4 * r0;
+
+      long c = d0 >>> 26; h0 = d0 & MASK26;
+      d1 += c; c = d1 >>> 26; h1 = d1 & MASK26;
+      d2 += c; c = d2 >>> 26; h2 = d2 & MASK26;
+      d3 += c; c = d3 >>> 26; h3 = d3 & MASK26;
+      d4 += c; c = d4 >>> 26; h4 = d4 & MASK26;
+      h0 += c * 5; c = h0 >>> 26; h0 &= MASK26;
+      h1 += c;
+    }
+
+    // Fully carry h.
+    long c = h1 >>> 26; h1 &= MASK26;
+    h2 += c; c = h2 >>> 26; h2 &= MASK26;
+    h3 += c; c = h3 >>> 26; h3 &= MASK26;
+    h4 += c; c = h4 >>> 26; h4 &= MASK26;
+    h0 += c * 5; c = h0 >>> 26; h0 &= MASK26;
+    h1 += c;
+
+    // g = h - p (that is, h + 5 - 2^130).
+    long g0 = h0 + 5; c = g0 >>> 26; g0 &= MASK26;
+    long g1 = h1 + c; c = g1 >>> 26; g1 &= MASK26;
+    long g2 = h2 + c; c = g2 >>> 26; g2 &= MASK26;
+    long g3 = h3 + c; c = g3 >>> 26; g3 &= MASK26;
+    long g4 = h4 + c - (1L << 26);
+
+    // h if h < p (g negative), g otherwise; without branching on secret data.
+    long mask = (g4 >>> 63) - 1;
+    h0 = (h0 & ~mask) | (g0 & mask);
+    h1 = (h1 & ~mask) | (g1 & mask);
+    h2 = (h2 & ~mask) | (g2 & mask);
+    h3 = (h3 & ~mask) | (g3 & mask);
+    h4 = (h4 & ~mask) | (g4 & mask);
+
+    // h mod 2^128, plus s.
+    long f0 = ((h0) | (h1 << 26)) & 0xffffffffL;
+    long f1 = ((h1 >>> 6) | (h2 << 20)) & 0xffffffffL;
+    long f2 = ((h2 >>> 12) | (h3 << 14)) & 0xffffffffL;
+    long f3 = ((h3 >>> 18) | (h4 << 8)) & 0xffffffffL;
+
+    long f = f0 + load(key, 16);
+    store(out, outOff, f);
+    f = f1 + load(key, 20) + (f >>> 32);
+    store(out, outOff + 4, f);
+    f = f2 + load(key, 24) + (f >>> 32);
+    store(out, outOff + 8, f);
+    f = f3 + load(key, 28) + (f >>> 32);
+    store(out, outOff + 12, f);
+  }
+
+  /**
+   * Whether the authenticator at {@code macOff} matches the message, in time independent of where they differ.
+   */
+  static boolean verify(byte[] mac, int macOff, byte[] m, int off, int len, byte[] key) {
+    byte[] expected = new byte[MAC_BYTES];
+    mac(expected, 0, m, off, len, key);
+    int diff = 0;
+    for (int i = 0; i < MAC_BYTES; i++)
+      diff |= expected[i] ^ mac[macOff + i];
+    return diff == 0;
+  }
+
+  // Unsigned.
+  private static long load(byte[] b, int off) {
+    return Salsa20.load(b, off) & 0xffffffffL;
+  }
+
+  private static void store(byte[] b, int off, long v) {
+    b[off] = (byte) v;
+    b[off + 1] = (byte) (v >>> 8);
+    b[off + 2] = (byte) (v >>> 16);
+    b[off + 3] = (byte) (v >>> 24);
+  }
+}
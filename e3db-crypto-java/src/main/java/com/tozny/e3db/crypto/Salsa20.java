@@ -0,0 +1,201 @@
+package com.tozny.e3db.crypto;
+
+/**
+ * The Salsa20/20 stream cipher, plus the HSalsa20 and XSalsa20 constructions built on it, as
+ * used by NaCl's {@code crypto_stream_xsalsa20}.
+ *
+ * <p>A cipher state is 16 words: constants, key, nonce and block counter, laid out as in the
+ * Salsa20 specification.
+ */
+final class Salsa20 {
+  static final int KEY_BYTES = 32;
+  static final int NONCE_BYTES = 24;
+  static final int BLOCK_BYTES = 64;
+
+  // "expand 32-byte k"
+  private static final int C0 = 0x61707865;
+  private static final int C1 = 0x3320646e;
+  private static final int C2 = 0x79622d32;
+  private static final int C3 = 0x6b206574;
+
+  private Salsa20() {
+  }
+
+  /**
+   * Initial XSalsa20 state (block counter 0) for the given 32-byte key and 24-byte nonce.
+   */
+  static int[] xsalsa20(byte[] key, byte[] nonce) {
+    int[] subKey = new int[8];
+    hsalsa20(subKey, key, nonce);
+
+    int[] state = new int[16];
+    state[0] = C0;
+    state[1] = subKey[0];
+    state[2] = subKey[1];
+    state[3] = subKey[2];
+    state[4] = subKey[3];
+    state[5] = C1;
+    state[6] = load(nonce, 16);
+    state[7] = load(nonce, 20);
+    state[10] = C2;
+    state[11] = subKey[4];
+    state[12] = subKey[5];
+    state[13] = subKey[6];
+    state[14] = subKey[7];
+    state[15] = C3;
+    return state;
+  }
+
+  /**
+   * HSalsa20 of a 32-byte key and the first 16 bytes of {@code nonce}: 8 words of derived key.
+   */
+  static void hsalsa20(int[] out, byte[] key, byte[] nonce) {
+    int[] x = new int[16];
+    x[0] = C0;
+    x[1] = load(key, 0);
+    x[2] = load(key, 4);
+    x[3] = load(key, 8);
+    x[4] = load(key, 12);
+    x[5] = C1;
+    x[6] = load(nonce, 0);
+    x[7] = load(nonce, 4);
+    x[8] = load(nonce, 8);
+    x[9] = load(nonce, 12);
+    x[10] = C2;
+    x[11] = load(key, 16);
+    x[12] = load(key, 20);
+    x[13] = load(key, 24);
+    x[14] = load(key, 28);
+    x[15] = C3;
+    core(x, x, false);
+
+    out[0] = x[0];
+    out[1] = x[5];
+    out[2] = x[10];
+    out[3] = x[15];
+    out[4] = x[6];
+    out[5] = x[7];
+    out[6] = x[8];
+    out[7] = x[9];
+  }
+
+  /**
+   * Computes the keystream block for {@code state} at block {@code counter}.
+   */
+  static void block(int[] state, long counter, int[] out) {
+    state[8] = (int) counter;
+    state[9] = (int) (counter >>> 32);
+    core(state, out, true);
+  }
+
+  /**
+   * XORs {@code len} bytes of keystream, starting at the first byte of block {@code counter}, with
+   * {@code in} into {@code out}.
+   */
+  static void stream(int[] state, long counter, byte[] in, int inOff, byte[] out, int outOff, int len) {
+    int[] block = new int[16];
+    while (len > 0) {
+      block(state, counter++, block);
+      int n = Math.min(len, BLOCK_BYTES);
+      xor(block, 0, in, inOff, out, outOff, n);
+      inOff += n;
+      outOff += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * XORs {@code len} bytes of a keystream block, starting at byte {@code from}, with {@code in} into {@code out}.
+   */
+  static void xor(int[] block, int from, byte[] in, int inOff, byte[] out, int outOff, int len) {
+    int i = 0;
+    // Whole words first.
+    if ((from & 3) == 0) {
+      for (; i + 4 <= len; i += 4) {
+        int k = block[(from + i) >>> 2];
+        out[outOff + i] = (byte) (in[inOff + i] ^ k);
+        out[outOff + i + 1] = (byte) (in[inOff + i + 1] ^ (k >>> 8));
+        out[outOff + i + 2] = (byte) (in[inOff + i + 2] ^ (k >>> 16));
+        out[outOff + i + 3] = (byte) (in[inOff + i + 3] ^ (k >>> 24));
+      }
+    }
+    for (; i < len; i++) {
+      int j = from + i;
+      out[outOff + i] = (byte) (in[inOff + i] ^ (block[j >>> 2] >>> ((j & 3) << 3)));
+    }
+  }
+
+  /**
+   * Writes {@code len} bytes of a keystream block, starting at its first byte, to {@code out}.
+   */
+  static void bytes(int[] block, byte[] out, int len) {
+    for (int i = 0; i < len; i++)
+      out[i] = (byte) (block[i >>> 2] >>> ((i & 3) << 3));
+  }
+
+  static int load(byte[] b, int off) {
+    return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+  }
+
+  /**
+   * 20 rounds of Salsa20 over {@code in}, adding the input back at the end when {@code add} is true
+   * (Salsa20) and not otherwise (HSalsa20). {@code in} and {@code out} may be the same array.
+   */
+  private static void core(int[] in, int[] out, boolean add) {
+    // Locals rather than an array, so the JIT can keep the state in registers.
+    int x0 = in[0], x1 = in[1], x2 = in[2], x3 = in[3];
+    int x4 = in[4], x5 = in[5], x6 = in[6], x7 = in[7];
+    int x8 = in[8], x9 = in[9], x10 = in[10], x11 = in[11];
+    int x12 = in[12], x13 = in[13], x14 = in[14], x15 = in[15];
+
+    for (int i = 0; i < 10; i++) {
+      // Columns.
+      x4 ^= Integer.rotateLeft(x0 + x12, 7);
+      x8 ^= Integer.rotateLeft(x4 + x0, 9);
+      x12 ^= Integer.rotateLeft(x8 + x4, 13);
+      x0 ^= Integer.rotateLeft(x12 + x8, 18);
+      x9 ^= Integer.rotateLeft(x5 + x1, 7);
+      x13 ^= Integer.rotateLeft(x9 + x5, 9);
+      x1 ^= Integer.rotateLeft(x13 + x9, 13);
+      x5 ^= Integer.rotateLeft(x1 + x13, 18);
+      x14 ^= Integer.rotateLeft(x10 + x6, 7);
+      x2 ^= Integer.rotateLeft(x14 + x10, 9);
+      x6 ^= Integer.rotateLeft(x2 + x14, 13);
+      x10 ^= Integer.rotateLeft(x6 + x2, 18);
+      x3 ^= Integer.rotateLeft(x15 + x11, 7);
+      x7 ^= Integer.rotateLeft(x3 + x15, 9);
+      x11 ^= Integer.rotateLeft(x7 + x3, 13);
+      x15 ^= Integer.rotateLeft(x11 + x7, 18);
+
+      // Rows.
+      x1 ^= Integer.rotateLeft(x0 + x3, 7);
+      x2 ^= Integer.rotateLeft(x1 + x0, 9);
+      x3 ^= Integer.rotateLeft(x2 + x1, 13);
+      x0 ^= Integer.rotateLeft(x3 + x2, 18);
+      x6 ^= Integer.rotateLeft(x5 + x4, 7);
+      x7 ^= Integer.rotateLeft(x6 + x5, 9);
+      x4 ^= Integer.rotateLeft(x7 + x6, 13);
+      x5 ^= Integer.rotateLeft(x4 + x7, 18);
+      x11 ^= Integer.rotateLeft(x10 + x9, 7);
+      x8 ^= Integer.rotateLeft(x11 + x10, 9);
+      x9 ^= Integer.rotateLeft(x8 + x11, 13);
+      x10 ^= Integer.rotateLeft(x9 + x8, 18);
+      x12 ^= Integer.rotateLeft(x15 + x14, 7);
+      x13 ^= Integer.rotateLeft(x12 + x15, 9);
+      x14 ^= Integer.rotateLeft(x13 + x12, 13);
+      x15 ^= Integer.rotateLeft(x14 + x13, 18);
+    }
+
+    if (add) {
+      x0 += in[0]; x1 += in[1]; x2 += in[2]; x3 += in[3];
+      x4 += in[4]; x5 += in[5]; x6 += in[6]; x7 += in[7];
+      x8 += in[8]; x9 += in[9]; x10 += in[10]; x11 += in[11];
+      x12 += in[12]; x13 += in[13]; x14 += in[14]; x15 += in[15];
+    }
+
+    out[0] = x0; out[1] = x1; out[2] = x2; out[3] = x3;
+    out[4] = x4; out[5] = x5; out[6] = x6; out[7] = x7;
+    out[8] = x8; out[9] = x9; out[10] = x10; out[11] = x11;
+    out[12] = x12; out[13] = x13; out[14] = x14; out[15] = x15;
+  }
+}
@@ -0,0 +1,74 @@
+package com.tozny.e3db.crypto;
+
+/**
+ * NaCl's {@code crypto_secretbox_xsalsa20poly1305}: XSalsa20 encryption, authenticated with Poly1305
+ * under a one-time key taken from the first 32 bytes of the keystream.
+ *
+ * <p>Boxes are laid out as the 16-byte authenticator followed by the ciphertext, the same as
+ * libsodium's "easy" API and Kalium's {@code SecretBox}; no zero padding is used.
+ */
+final class XSalsa20Poly1305 {
+  static final int KEY_BYTES = Salsa20.KEY_BYTES;
+  static final int NONCE_BYTES = Salsa20.NONCE_BYTES;
+  static final int MAC_BYTES = Poly1305.MAC_BYTES;
+
+  // Bytes of the first keystream block left for the message, after the one-time key.
+  private static final int FIRST_BLOCK = Salsa20.BLOCK_BYTES - Poly1305.KEY_BYTES;
+
+  private XSalsa20Poly1305() {
+  }
+
+  /**
+   * Encrypts {@code len} bytes of {@code message}, starting at {@code off}.
+   */
+  static byte[] seal(byte[] message, int off, int len, byte[] nonce, byte[] key) {
+    checkKey(key, nonce);
+    int[] state = Salsa20.xsalsa20(key, nonce);
+    int[] block = new int[16];
+    Salsa20.block(state, 0, block);
+
+    byte[] box = new byte[MAC_BYTES + len];
+    int first = Math.min(len, FIRST_BLOCK);
+    Salsa20.xor(block, Poly1305.KEY_BYTES, message, off, box, MAC_BYTES, first);
+    if (len > first)
+      Salsa20.stream(state, 1, message, off + first, box, MAC_BYTES + first, len - first);
+
+    byte[] oneTimeKey = new byte[Poly1305.KEY_BYTES];
+    Salsa20.bytes(block, oneTimeKey, Poly1305.KEY_BYTES);
+    Poly1305.mac(box, 0, box, MAC_BYTES, len, oneTimeKey);
+    return box;
+  }
+
+  /**
+   * Decrypts a box made by {@link #seal(byte[], int, int, byte[], byte[])}, or throws if it fails to authenticate.
+   */
+  static byte[] open(byte[] box, byte[] nonce, byte[] key) {
+    checkKey(key, nonce);
+    if (box.length < MAC_BYTES)
+      throw new RuntimeException("Decryption failed. Ciphertext failed verification");
+
+    int[] state = Salsa20.xsalsa20(key, nonce);
+    int[] block = new int[16];
+    Salsa20.block(state, 0, block);
+
+    byte[] oneTimeKey = new byte[Poly1305.KEY_BYTES];
+    Salsa20.bytes(block, oneTimeKey, Poly1305.KEY_BYTES);
+    int len = box.length - MAC_BYTES;
+    if (!Poly1305.verify(box, 0, box, MAC_BYTES, len, oneTimeKey))
+      throw new RuntimeException("Decryption failed. Ciphertext failed verification");
+
+    byte[] message = new byte[len];
+    int first = Math.min(len, FIRST_BLOCK);
+    Salsa20.xor(block, Poly1305.KEY_BYTES, box, MAC_BYTES, message, 0, first);
+    if (len > first)
+      Salsa20.stream(state, 1, box, MAC_BYTES + first, message, first, len - first);
+    return message;
+  }
+
+  private static void checkKey(byte[] key, byte[] nonce) {
+    if (key.length != KEY_BYTES)
+      throw new RuntimeException("Invalid size: " + key.length);
+    if (nonce.length != NONCE_BYTES)
+      throw new RuntimeException("Invalid size: " + nonce.length);
+  }
+}
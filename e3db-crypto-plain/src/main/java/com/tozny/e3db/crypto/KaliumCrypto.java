@@ -1,20 +1,56 @@
 package com.tozny.e3db.crypto;
 
+import com.tozny.e3db.BufferedRandom;
 import com.tozny.e3db.CipherWithNonce;
 import com.tozny.e3db.Crypto;
+import com.tozny.e3db.SharedKeyCache;
+
+import org.abstractj.kalium.NaCl;
 
-import org.abstractj.kalium.crypto.Box;
-import org.abstractj.kalium.crypto.Random;
 import org.abstractj.kalium.crypto.SecretBox;
 import org.abstractj.kalium.keys.KeyPair;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static com.tozny.e3db.Checks.*;
+import static org.abstractj.kalium.NaCl.Sodium.CRYPTO_BOX_CURVE25519XSALSA20POLY1305_BEFORENMBYTES;
 import static org.abstractj.kalium.NaCl.Sodium.CRYPTO_BOX_CURVE25519XSALSA20POLY1305_NONCEBYTES;
+import static org.abstractj.kalium.NaCl.Sodium.CRYPTO_BOX_CURVE25519XSALSA20POLY1305_PUBLICKEYBYTES;
+import static org.abstractj.kalium.NaCl.Sodium.CRYPTO_BOX_CURVE25519XSALSA20POLY1305_SECRETKEYBYTES;
 import static org.abstractj.kalium.NaCl.Sodium.CRYPTO_SECRETBOX_XSALSA20POLY1305_KEYBYTES;
 import static org.abstractj.kalium.NaCl.Sodium.CRYPTO_SECRETBOX_XSALSA20POLY1305_NONCEBYTES;
+import static org.abstractj.kalium.crypto.Util.checkLength;
+import static org.abstractj.kalium.crypto.Util.isValid;
 
 public class KaliumCrypto implements Crypto {
-  private final static Random random = new Random();
+  // crypto_secretbox_xsalsa20poly1305_ZEROBYTES and _BOXZEROBYTES: zero padding before the message and before
+  // the ciphertext in the padded (non-"easy") API. Kalium only exposes these as deprecated constants.
+  private static final int ZERO_BYTES = 32;
+  private static final int BOXZERO_BYTES = 16;
+
+  private final static BufferedRandom random = new BufferedRandom() {
+    @Override
+    protected void fill(byte[] bytes) {
+      NaCl.sodium().randombytes(bytes, bytes.length);
+    }
+  };
+  private final SharedKeyCache sharedKeys;
+
+  public KaliumCrypto() {
+    this(SharedKeyCache.DEFAULT_SIZE);
+  }
+
+  /**
+   * @param sharedKeyCacheSize Number of shared keys (one per pair of public and private keys) to
+   *                           remember for {@link #encryptBox(byte[], byte[], byte[])} and
+   *                           {@link #decryptBox(CipherWithNonce, byte[], byte[])}. 0 disables the cache.
+   */
+  public KaliumCrypto(int sharedKeyCacheSize) {
+    this.sharedKeys = new SharedKeyCache(sharedKeyCacheSize);
+  }
 
   @Override
   public CipherWithNonce encryptSecretBox(byte[] message, byte[] key) {
@@ -31,14 +67,61 @@ public class KaliumCrypto implements Crypto {
     return new SecretBox(key).decrypt(message.getNonce(), message.getCipher());
   }
 
+  @Override
+  public List<CipherWithNonce> encryptSecretBoxes(List<byte[]> messages, List<byte[]> keys) {
+    checkNotNull(messages, "messages");
+    checkKeys(keys, messages.size(), "keys");
+    byte[] nonces = random.randomBytes(messages.size() * CRYPTO_SECRETBOX_XSALSA20POLY1305_NONCEBYTES);
+    List<CipherWithNonce> ciphers = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      byte[] message = messages.get(i);
+      checkNotNull(message, "message");
+      byte[] padded = new byte[ZERO_BYTES + message.length];
+      System.arraycopy(message, 0, padded, ZERO_BYTES, message.length);
+      byte[] nonce = Arrays.copyOfRange(nonces, i * CRYPTO_SECRETBOX_XSALSA20POLY1305_NONCEBYTES, (i + 1) * CRYPTO_SECRETBOX_XSALSA20POLY1305_NONCEBYTES);
+      ciphers.add(new CipherWithNonce(encrypt(padded, nonce, keys.get(keys.size() == 1 ? 0 : i)), nonce));
+    }
+    return ciphers;
+  }
+
+  @Override
+  public List<byte[]> decryptSecretBoxes(List<CipherWithNonce> messages, List<byte[]> keys) {
+    checkNotNull(messages, "messages");
+    checkKeys(keys, messages.size(), "keys");
+    List<byte[]> plains = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      CipherWithNonce message = messages.get(i);
+      checkNotNull(message, "message");
+      byte[] padded = decrypt(message, keys.get(keys.size() == 1 ? 0 : i));
+      plains.add(Arrays.copyOfRange(padded, ZERO_BYTES, padded.length));
+    }
+    return plains;
+  }
+
+  @Override
+  public CipherWithNonce encryptSecretBox(ByteBuffer message, byte[] key) {
+    checkNotNull(message, "message");
+    byte[] padded = new byte[ZERO_BYTES + message.remaining()];
+    message.get(padded, ZERO_BYTES, message.remaining());
+    byte[] nonce = random.randomBytes(CRYPTO_SECRETBOX_XSALSA20POLY1305_NONCEBYTES);
+    return new CipherWithNonce(encrypt(padded, nonce, key), nonce);
+  }
+
+  @Override
+  public int decryptSecretBox(CipherWithNonce message, byte[] key, ByteBuffer destination) {
+    checkNotNull(message, "message");
+    checkNotNull(destination, "destination");
+    byte[] padded = decrypt(message, key);
+    destination.put(padded, ZERO_BYTES, padded.length - ZERO_BYTES);
+    return padded.length - ZERO_BYTES;
+  }
+
   @Override
   public CipherWithNonce encryptBox(byte[] message, byte[] publicKey, byte[] privateKey) {
     checkNotNull(message, "message");
     checkNotEmpty(publicKey, "publicKey");
     checkNotEmpty(privateKey, "privateKey");
-    Box box = new Box(publicKey, privateKey);
-    byte[] nonce = random.randomBytes(CRYPTO_BOX_CURVE25519XSALSA20POLY1305_NONCEBYTES);
-    return new CipherWithNonce(box.encrypt(nonce, message), nonce);
+    return encryptBoxPrecomputed(message, sharedKey(publicKey, privateKey));
   }
 
   @Override
@@ -46,8 +129,36 @@ public class KaliumCrypto implements Crypto {
     checkNotNull(message, "message");
     checkNotNull(publicKey, "publicKey");
     checkNotNull(privateKey, "privateKey");
-    Box box = new Box(publicKey, privateKey);
-    return box.decrypt(message.getNonce(), message.getCipher());
+    return decryptBoxPrecomputed(message, sharedKey(publicKey, privateKey));
+  }
+
+  @Override
+  public byte[] precomputeBoxKey(byte[] publicKey, byte[] privateKey) {
+    checkNotEmpty(publicKey, "publicKey");
+    checkNotEmpty(privateKey, "privateKey");
+    checkLength(publicKey, CRYPTO_BOX_CURVE25519XSALSA20POLY1305_PUBLICKEYBYTES);
+    checkLength(privateKey, CRYPTO_BOX_CURVE25519XSALSA20POLY1305_SECRETKEYBYTES);
+    byte[] sharedKey = new byte[CRYPTO_BOX_CURVE25519XSALSA20POLY1305_BEFORENMBYTES];
+    if (NaCl.sodium().crypto_box_curve25519xsalsa20poly1305_beforenm(sharedKey, publicKey, privateKey) != 0)
+      throw new RuntimeException("Failed to compute shared key.");
+    return sharedKey;
+  }
+
+  // crypto_box_afternm is crypto_secretbox, keyed with the shared key.
+
+  @Override
+  public CipherWithNonce encryptBoxPrecomputed(byte[] message, byte[] sharedKey) {
+    checkNotNull(message, "message");
+    checkNotEmpty(sharedKey, "sharedKey");
+    byte[] nonce = random.randomBytes(CRYPTO_BOX_CURVE25519XSALSA20POLY1305_NONCEBYTES);
+    return new CipherWithNonce(new SecretBox(sharedKey).encrypt(nonce, message), nonce);
+  }
+
+  @Override
+  public byte[] decryptBoxPrecomputed(CipherWithNonce message, byte[] sharedKey) {
+    checkNotNull(message, "message");
+    checkNotEmpty(sharedKey, "sharedKey");
+    return new SecretBox(sharedKey).decrypt(message.getNonce(), message.getCipher());
   }
 
   @Override
@@ -65,4 +176,51 @@ public class KaliumCrypto implements Crypto {
   public byte[] newSecretKey() {
     return random.randomBytes(CRYPTO_SECRETBOX_XSALSA20POLY1305_KEYBYTES);
   }
+
+  @Override
+  public List<byte[]> newSecretKeys(int count) {
+    if (count < 0)
+      throw new IllegalArgumentException("count: must be greater than or equal to zero.");
+    byte[] bytes = random.randomBytes(count * CRYPTO_SECRETBOX_XSALSA20POLY1305_KEYBYTES);
+    List<byte[]> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      keys.add(Arrays.copyOfRange(bytes, i * CRYPTO_SECRETBOX_XSALSA20POLY1305_KEYBYTES, (i + 1) * CRYPTO_SECRETBOX_XSALSA20POLY1305_KEYBYTES));
+    return keys;
+  }
+
+  /**
+   * Encrypts a message already preceded by {@code ZERO_BYTES} zeros, as NaCl's secretbox requires. Saves the copy
+   * {@link SecretBox} makes to add them.
+   */
+  private static byte[] encrypt(byte[] padded, byte[] nonce, byte[] key) {
+    checkNotEmpty(key, "key");
+    checkLength(key, CRYPTO_SECRETBOX_XSALSA20POLY1305_KEYBYTES);
+    byte[] cipher = new byte[padded.length];
+    isValid(NaCl.sodium().crypto_secretbox_xsalsa20poly1305(cipher, padded, padded.length, nonce, key), "Encryption failed");
+    return Arrays.copyOfRange(cipher, BOXZERO_BYTES, cipher.length);
+  }
+
+  /**
+   * Decrypts a message, returning the plaintext preceded by {@code ZERO_BYTES} zeros.
+   */
+  private static byte[] decrypt(CipherWithNonce message, byte[] key) {
+    checkNotEmpty(key, "key");
+    checkLength(key, CRYPTO_SECRETBOX_XSALSA20POLY1305_KEYBYTES);
+    checkLength(message.getNonce(), CRYPTO_SECRETBOX_XSALSA20POLY1305_NONCEBYTES);
+    byte[] padded = new byte[BOXZERO_BYTES + message.getCipher().length];
+    System.arraycopy(message.getCipher(), 0, padded, BOXZERO_BYTES, message.getCipher().length);
+    byte[] plain = new byte[padded.length];
+    isValid(NaCl.sodium().crypto_secretbox_xsalsa20poly1305_open(plain, padded, padded.length, message.getNonce(), key),
+      "Decryption failed. Ciphertext failed verification");
+    return plain;
+  }
+
+  private byte[] sharedKey(byte[] publicKey, byte[] privateKey) {
+    byte[] sharedKey = sharedKeys.get(publicKey, privateKey);
+    if (sharedKey == null) {
+      sharedKey = precomputeBoxKey(publicKey, privateKey);
+      sharedKeys.put(publicKey, privateKey, sharedKey);
+    }
+    return sharedKey;
+  }
 }
@@ -0,0 +1,24 @@
+package com.tozny.e3db.crypto;
+
+import com.tozny.e3db.Crypto;
+import com.tozny.e3db.CryptoProvider;
+
+/**
+ * Registers {@link KaliumCrypto}, which uses the native libsodium library through Kalium.
+ */
+public class KaliumCryptoProvider implements CryptoProvider {
+  @Override
+  public String name() {
+    return "kalium";
+  }
+
+  @Override
+  public int priority() {
+    return 100;
+  }
+
+  @Override
+  public Crypto create() {
+    return new KaliumCrypto();
+  }
+}
@@ -0,0 +1,680 @@
+package com.tozny.e3db.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tozny.e3db.InMemoryTransport;
+import com.tozny.e3db.Transport;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * An in-memory stand-in for the E3DB API.
+ *
+ * <p>Implements the endpoints used by the E3DB client: client registration, tokens, records
+ * (read, write, update, delete and search), access keys, sharing policies and client lookup. All
+ * state is held in memory and lost when the instance is discarded. Record data and access keys are
+ * stored exactly as given; no cryptographic checks are performed.
+ *
+ * <p>Latency, server errors and throttling (HTTP 429) can be injected to test client behavior
+ * under load. Use {@link FakeE3DBServer} to serve an instance over HTTP, or {@link #transport()}
+ * to answer a client's requests in-process, without sockets:
+ *
+ * <pre>
+ * FakeE3DB e3db = new FakeE3DB();
+ * Client client = new ClientBuilder()
+ *   .fromCredentials(credentials, privateKey) // from Client.register(..., e3db.transport(), ...)
+ *   .setTransport(e3db.transport())
+ *   .build();
+ * </pre>
+ *
+ * <p>This class is thread-safe.
+ */
+public class FakeE3DB {
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int DEFAULT_COUNT = 50;
+  private static final MediaType APPLICATION_JSON = MediaType.parse("application/json");
+  private static final ThreadLocal<SimpleDateFormat> timestamps = new ThreadLocal<SimpleDateFormat>() {
+    @Override
+    protected SimpleDateFormat initialValue() {
+      SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'000Z'");
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      return format;
+    }
+  };
+
+  private static class ClientInfo {
+    private final UUID clientId;
+    private final String name;
+    private final String apiKey;
+    private final String apiSecret;
+    private final String publicKey;
+
+    private ClientInfo(UUID clientId, String name, String apiKey, String apiSecret, String publicKey) {
+      this.clientId = clientId;
+      this.name = name;
+      this.apiKey = apiKey;
+      this.apiSecret = apiSecret;
+      this.publicKey = publicKey;
+    }
+  }
+
+  private static class StoredRecord {
+    private final UUID recordId;
+    private final UUID writerId;
+    private final UUID userId;
+    private final String type;
+    private final String created;
+    private final long index;
+    private final JsonNode plain;
+    private final JsonNode data;
+    private final String version;
+    private final String lastModified;
+
+    private StoredRecord(UUID recordId, UUID writerId, UUID userId, String type, String created, long index,
+                         JsonNode plain, JsonNode data, String version, String lastModified) {
+      this.recordId = recordId;
+      this.writerId = writerId;
+      this.userId = userId;
+      this.type = type;
+      this.created = created;
+      this.index = index;
+      this.plain = plain;
+      this.data = data;
+      this.version = version;
+      this.lastModified = lastModified;
+    }
+  }
+
+  private static class StoredKey {
+    private final String eak;
+    private final UUID authorizerId;
+
+    private StoredKey(String eak, UUID authorizerId) {
+      this.eak = eak;
+      this.authorizerId = authorizerId;
+    }
+  }
+
+  private final Object lock = new Object();
+  private final Map<UUID, ClientInfo> clients = new HashMap<>();
+  private final Map<String, ClientInfo> clientsByApiKey = new HashMap<>();
+  private final Map<String, UUID> tokens = new HashMap<>();
+  private final Map<UUID, StoredRecord> records = new HashMap<>();
+  private final TreeMap<Long, StoredRecord> recordsByIndex = new TreeMap<>();
+  private final Map<String, StoredKey> accessKeys = new HashMap<>();
+  // Keyed by writer/reader/type; holds readers allowed to read a writer's records.
+  private final Map<String, Boolean> policies = new LinkedHashMap<>();
+  private long nextIndex = 1;
+  private int tokensIssued = 0;
+
+  private final Random random = new Random();
+  private volatile long latencyMillis = 0;
+  private volatile long jitterMillis = 0;
+  private volatile double errorRate = 0.0;
+  private volatile double throttleRate = 0.0;
+  private volatile int tokenLifetimeSeconds = 3600;
+
+  /**
+   * Delay every response by a fixed amount, plus a random amount up to {@code jitterMillis}.
+   */
+  public FakeE3DB setLatency(long latencyMillis, long jitterMillis) {
+    if (latencyMillis < 0 || jitterMillis < 0)
+      throw new IllegalArgumentException("latency: must be greater than or equal to zero.");
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+    return this;
+  }
+
+  /**
+   * Answer the given fraction of requests (between 0 and 1) with HTTP 500.
+   */
+  public FakeE3DB setErrorRate(double errorRate) {
+    checkRate(errorRate, "errorRate");
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  /**
+   * Answer the given fraction of requests (between 0 and 1) with HTTP 429 and a {@code Retry-After} header.
+   */
+  public FakeE3DB setThrottleRate(double throttleRate) {
+    checkRate(throttleRate, "throttleRate");
+    this.throttleRate = throttleRate;
+    return this;
+  }
+
+  /**
+   * Set the {@code expires_in} value (in seconds) returned with new tokens. Defaults to one hour.
+   */
+  public FakeE3DB setTokenLifetime(int seconds) {
+    this.tokenLifetimeSeconds = seconds;
+    return this;
+  }
+
+  /**
+   * Invalidate every token issued so far; requests using them get HTTP 401.
+   */
+  public FakeE3DB revokeTokens() {
+    synchronized (lock) {
+      tokens.clear();
+    }
+    return this;
+  }
+
+  /**
+   * The number of tokens issued so far.
+   */
+  public int tokensIssued() {
+    synchronized (lock) {
+      return tokensIssued;
+    }
+  }
+
+  /**
+   * A transport that answers requests with this instance, in the same process. The host given to
+   * clients using it is ignored.
+   */
+  public Transport transport() {
+    return new InMemoryTransport(new InMemoryTransport.Handler() {
+      @Override
+      public Response handle(Request request) throws IOException {
+        byte[] body = null;
+        if (request.body() != null) {
+          Buffer buffer = new Buffer();
+          request.body().writeTo(buffer);
+          body = buffer.readByteArray();
+        }
+
+        FakeResponse response = FakeE3DB.this.handle(request.method(), request.url().encodedPath(),
+          request.url().encodedQuery(), request.header("Authorization"), body);
+        Response.Builder builder = new Response.Builder()
+          .request(request)
+          .protocol(Protocol.HTTP_1_1)
+          .code(response.code)
+          .message(response.message)
+          .body(ResponseBody.create(APPLICATION_JSON, response.body));
+        for (Map.Entry<String, String> header : response.headers.entrySet())
+          builder.header(header.getKey(), header.getValue());
+        return builder.build();
+      }
+    });
+  }
+
+  private static void checkRate(double rate, String name) {
+    if (rate < 0.0 || rate > 1.0)
+      throw new IllegalArgumentException(name + ": must be between 0 and 1.");
+  }
+
+  /**
+   * Answer a single request.
+   *
+   * @param method HTTP method (e.g., {@code GET}).
+   * @param path Request path, without query string (e.g., {@code /v1/storage/search}).
+   * @param query Raw query string, or {@code null}.
+   * @param authorization Value of the {@code Authorization} header, or {@code null}.
+   * @param body Request body; may be empty or {@code null}.
+   */
+  public FakeResponse handle(String method, String path, String query, String authorization, byte[] body) {
+    long delay = latencyMillis + (jitterMillis > 0 ? (long) (random.nextDouble() * jitterMillis) : 0);
+    if (delay > 0) {
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    double roll = random.nextDouble();
+    if (roll < throttleRate)
+      return FakeResponse.throttled(1);
+    if (roll < throttleRate + errorRate)
+      return FakeResponse.empty(500, "Injected Error");
+
+    try {
+      return route(method, path, query, authorization, body == null ? new byte[0] : body);
+    } catch (IOException | RuntimeException e) {
+      return FakeResponse.json(400, "Bad Request", "{\"message\": " + nodes.textNode(String.valueOf(e.getMessage())) + "}");
+    }
+  }
+
+  private FakeResponse route(String method, String path, String query, String authorization, byte[] body) throws IOException {
+    String[] parts = path.replaceAll("^/+", "").split("/");
+
+    if (method.equals("POST") && path.equals("/v1/account/e3db/clients/register"))
+      return register(read(body));
+
+    if (method.equals("POST") && path.equals("/v1/auth/token"))
+      return token(authorization);
+
+    UUID caller = authenticate(authorization);
+    if (caller == null)
+      return FakeResponse.empty(401, "Unauthorized");
+
+    if (parts.length < 3 || !parts[0].equals("v1") || !parts[1].equals("storage"))
+      return FakeResponse.empty(404, "Not Found");
+
+    String resource = parts[2];
+    if (resource.equals("search") && method.equals("POST"))
+      return search(caller, read(body));
+
+    if (resource.equals("records")) {
+      if (parts.length == 3 && method.equals("POST"))
+        return writeRecord(caller, read(body));
+      if (parts.length == 4 && method.equals("GET"))
+        return readRecords(caller, parts[3]);
+      if (parts.length == 6 && parts[3].equals("safe") && method.equals("PUT"))
+        return updateRecord(caller, UUID.fromString(parts[4]), parts[5], read(body));
+      if (parts.length == 6 && parts[3].equals("safe") && method.equals("DELETE"))
+        return deleteRecord(caller, UUID.fromString(parts[4]), parts[5]);
+    }
+
+    if (resource.equals("access_keys") && parts.length == 7) {
+      UUID writerId = UUID.fromString(parts[3]);
+      UUID userId = UUID.fromString(parts[4]);
+      UUID readerId = UUID.fromString(parts[5]);
+      String type = parts[6];
+      if (method.equals("GET"))
+        return getAccessKey(caller, writerId, userId, readerId, type);
+      if (method.equals("PUT"))
+        return putAccessKey(caller, writerId, userId, readerId, type, read(body));
+      if (method.equals("DELETE"))
+        return deleteAccessKey(caller, writerId, userId, readerId, type);
+    }
+
+    if (resource.equals("policy")) {
+      if (parts.length == 4 && parts[3].equals("incoming") && method.equals("GET"))
+        return incoming(caller);
+      if (parts.length == 4 && parts[3].equals("outgoing") && method.equals("GET"))
+        return outgoing(caller);
+      if (parts.length == 7 && method.equals("PUT"))
+        return putPolicy(caller, UUID.fromString(parts[4]), UUID.fromString(parts[5]), parts[6], read(body));
+    }
+
+    if (resource.equals("clients") && parts.length == 4 && method.equals("GET")) {
+      if (parts[3].equals("find"))
+        return FakeResponse.empty(404, "Not Found");
+      return lookupClient(UUID.fromString(parts[3]));
+    }
+
+    return FakeResponse.empty(404, "Not Found");
+  }
+
+  private static JsonNode read(byte[] body) throws IOException {
+    if (body.length == 0)
+      return nodes.objectNode();
+    return mapper.readTree(body);
+  }
+
+  private static FakeResponse ok(int code, String message, JsonNode body) throws IOException {
+    return new FakeResponse(code, message, mapper.writeValueAsBytes(body), new HashMap<String, String>());
+  }
+
+  private static String now() {
+    return timestamps.get().format(new Date());
+  }
+
+  private static String akKey(UUID writerId, UUID userId, UUID readerId, String type) {
+    return writerId + "/" + userId + "/" + readerId + "/" + type;
+  }
+
+  private static String policyKey(UUID writerId, UUID readerId, String type) {
+    return writerId + "/" + readerId + "/" + type;
+  }
+
+  private FakeResponse register(JsonNode request) throws IOException {
+    JsonNode client = request.get("client");
+    String name = client.get("name").asText();
+    String publicKey = client.get("public_key").get("curve25519").asText();
+    ClientInfo info = new ClientInfo(UUID.randomUUID(), name, UUID.randomUUID().toString(), UUID.randomUUID().toString(), publicKey);
+    synchronized (lock) {
+      clients.put(info.clientId, info);
+      clientsByApiKey.put(info.apiKey, info);
+    }
+
+    ObjectNode response = nodes.objectNode();
+    response.put("client_id", info.clientId.toString());
+    response.put("api_key_id", info.apiKey);
+    response.put("api_secret", info.apiSecret);
+    response.put("name", info.name);
+    response.putObject("public_key").put("curve25519", info.publicKey);
+    response.put("enabled", true);
+    return ok(201, "Created", response);
+  }
+
+  private FakeResponse token(String authorization) throws IOException {
+    if (authorization == null || !authorization.startsWith("Basic "))
+      return FakeResponse.empty(401, "Unauthorized");
+
+    String decoded = decodeBasic(authorization.substring(6));
+    int split = decoded == null ? -1 : decoded.indexOf(':');
+    if (split < 0)
+      return FakeResponse.empty(401, "Unauthorized");
+
+    String token = UUID.randomUUID().toString();
+    synchronized (lock) {
+      ClientInfo info = clientsByApiKey.get(decoded.substring(0, split));
+      if (info == null || !info.apiSecret.equals(decoded.substring(split + 1)))
+        return FakeResponse.empty(401, "Unauthorized");
+      tokens.put(token, info.clientId);
+      tokensIssued++;
+    }
+
+    ObjectNode response = nodes.objectNode();
+    response.put("access_token", token);
+    response.put("token_type", "Bearer");
+    response.put("expires_in", tokenLifetimeSeconds);
+    return ok(200, "OK", response);
+  }
+
+  private static String decodeBasic(String encoded) {
+    ByteString bytes = ByteString.decodeBase64(encoded.trim());
+    return bytes == null ? null : bytes.string(UTF8);
+  }
+
+  private UUID authenticate(String authorization) {
+    if (authorization == null || !authorization.startsWith("Bearer "))
+      return null;
+    synchronized (lock) {
+      return tokens.get(authorization.substring(7));
+    }
+  }
+
+  private FakeResponse lookupClient(UUID clientId) throws IOException {
+    ClientInfo info;
+    synchronized (lock) {
+      info = clients.get(clientId);
+    }
+    if (info == null)
+      return FakeResponse.empty(404, "Not Found");
+
+    ObjectNode response = nodes.objectNode();
+    response.put("client_id", info.clientId.toString());
+    response.putObject("public_key").put("curve25519", info.publicKey);
+    response.put("validated", true);
+    return ok(200, "OK", response);
+  }
+
+  private ObjectNode meta(StoredRecord record) {
+    ObjectNode meta = nodes.objectNode();
+    meta.put("record_id", record.recordId.toString());
+    meta.put("writer_id", record.writerId.toString());
+    meta.put("user_id", record.userId.toString());
+    meta.put("type", record.type);
+    meta.put("created", record.created);
+    meta.put("last_modified", record.lastModified);
+    meta.put("version", record.version);
+    meta.set("plain", record.plain);
+    return meta;
+  }
+
+  private ObjectNode recordJson(StoredRecord record) {
+    ObjectNode json = nodes.objectNode();
+    json.set("meta", meta(record));
+    json.set("data", record.data);
+    return json;
+  }
+
+  /** Must hold lock. */
+  private boolean canRead(UUID caller, StoredRecord record) {
+    return record.writerId.equals(caller) ||
+      Boolean.TRUE.equals(policies.get(policyKey(record.writerId, caller, record.type)));
+  }
+
+  private FakeResponse writeRecord(UUID caller, JsonNode request) throws IOException {
+    JsonNode meta = request.get("meta");
+    UUID writerId = UUID.fromString(meta.get("writer_id").asText());
+    if (!writerId.equals(caller))
+      return FakeResponse.empty(403, "Forbidden");
+
+    String timestamp = now();
+    StoredRecord record;
+    synchronized (lock) {
+      record = new StoredRecord(UUID.randomUUID(), writerId, UUID.fromString(meta.get("user_id").asText()),
+        meta.get("type").asText(), timestamp, nextIndex++,
+        meta.has("plain") ? meta.get("plain") : nodes.objectNode(), request.get("data"),
+        UUID.randomUUID().toString(), timestamp);
+      records.put(record.recordId, record);
+      recordsByIndex.put(record.index, record);
+    }
+    return ok(201, "Created", recordJson(record));
+  }
+
+  private FakeResponse readRecords(UUID caller, String ids) throws IOException {
+    String[] split = ids.split(",");
+    List<ObjectNode> found = new ArrayList<>(split.length);
+    synchronized (lock) {
+      for (String id : split) {
+        StoredRecord record = records.get(UUID.fromString(id.trim()));
+        if (record != null && canRead(caller, record))
+          found.add(recordJson(record));
+      }
+    }
+
+    if (split.length == 1) {
+      if (found.isEmpty())
+        return FakeResponse.empty(404, "Not Found");
+      return ok(200, "OK", found.get(0));
+    }
+
+    ArrayNode response = nodes.arrayNode();
+    response.addAll(found);
+    return ok(200, "OK", response);
+  }
+
+  private FakeResponse updateRecord(UUID caller, UUID recordId, String version, JsonNode request) throws IOException {
+    JsonNode meta = request.get("meta");
+    StoredRecord updated;
+    synchronized (lock) {
+      StoredRecord existing = records.get(recordId);
+      if (existing == null)
+        return FakeResponse.empty(404, "Not Found");
+      if (!existing.writerId.equals(caller))
+        return FakeResponse.empty(403, "Forbidden");
+      if (!existing.version.equals(version))
+        return FakeResponse.empty(409, "Conflict");
+
+      updated = new StoredRecord(existing.recordId, existing.writerId, existing.userId, existing.type,
+        existing.created, existing.index, meta.has("plain") ? meta.get("plain") : nodes.objectNode(),
+        request.get("data"), UUID.randomUUID().toString(), now());
+      records.put(recordId, updated);
+      recordsByIndex.put(updated.index, updated);
+    }
+    return ok(200, "OK", recordJson(updated));
+  }
+
+  private FakeResponse deleteRecord(UUID caller, UUID recordId, String version) {
+    synchronized (lock) {
+      StoredRecord existing = records.get(recordId);
+      if (existing == null)
+        return FakeResponse.empty(404, "Not Found");
+      if (!existing.writerId.equals(caller))
+        return FakeResponse.empty(403, "Forbidden");
+      if (!existing.version.equals(version))
+        return FakeResponse.empty(409, "Conflict");
+
+      records.remove(recordId);
+      recordsByIndex.remove(existing.index);
+    }
+    return FakeResponse.empty(204, "No Content");
+  }
+
+  private static Set<String> strings(JsonNode array) {
+    if (array == null || array.isNull())
+      return null;
+
+    Set<String> values = new HashSet<>();
+    for (JsonNode value : array)
+      values.add(value.asText());
+    return values;
+  }
+
+  private FakeResponse search(UUID caller, JsonNode request) throws IOException {
+    long after = request.has("after_index") ? request.get("after_index").asLong() : 0;
+    int count = request.has("count") ? request.get("count").asInt() : DEFAULT_COUNT;
+    boolean includeData = request.has("include_data") && request.get("include_data").asBoolean();
+    boolean allWriters = request.has("include_all_writers") && request.get("include_all_writers").asBoolean();
+    Set<String> writerIds = strings(request.get("writer_ids"));
+    Set<String> userIds = strings(request.get("user_ids"));
+    Set<String> recordIds = strings(request.get("record_ids"));
+    Set<String> types = strings(request.get("content_types"));
+
+    ArrayNode results = nodes.arrayNode();
+    long lastIndex = 0;
+    synchronized (lock) {
+      for (StoredRecord record : recordsByIndex.tailMap(after, false).values()) {
+        if (results.size() >= count)
+          break;
+        if (!canRead(caller, record))
+          continue;
+        if (writerIds != null) {
+          if (!writerIds.contains(record.writerId.toString()))
+            continue;
+        } else if (!allWriters && !record.writerId.equals(caller)) {
+          continue;
+        }
+        if (userIds != null && !userIds.contains(record.userId.toString()))
+          continue;
+        if (recordIds != null && !recordIds.contains(record.recordId.toString()))
+          continue;
+        if (types != null && !types.contains(record.type))
+          continue;
+
+        ObjectNode result = nodes.objectNode();
+        result.set("meta", meta(record));
+        if (includeData) {
+          result.set("record_data", record.data);
+          StoredKey key = accessKeys.get(akKey(record.writerId, record.userId, caller, record.type));
+          if (key != null)
+            result.set("access_key", accessKeyJson(key));
+          else
+            result.putNull("access_key");
+        }
+        results.add(result);
+        lastIndex = record.index;
+      }
+    }
+
+    ObjectNode response = nodes.objectNode();
+    response.set("results", results);
+    response.put("last_index", lastIndex);
+    return ok(200, "OK", response);
+  }
+
+  /** Must hold lock. */
+  private ObjectNode accessKeyJson(StoredKey key) {
+    ObjectNode json = nodes.objectNode();
+    json.put("eak", key.eak);
+    json.put("authorizer_id", key.authorizerId.toString());
+    ClientInfo authorizer = clients.get(key.authorizerId);
+    json.putObject("authorizer_public_key").put("curve25519", authorizer == null ? "" : authorizer.publicKey);
+    return json;
+  }
+
+  private FakeResponse getAccessKey(UUID caller, UUID writerId, UUID userId, UUID readerId, String type) throws IOException {
+    if (!caller.equals(readerId) && !caller.equals(writerId))
+      return FakeResponse.empty(403, "Forbidden");
+
+    ObjectNode response;
+    synchronized (lock) {
+      StoredKey key = accessKeys.get(akKey(writerId, userId, readerId, type));
+      if (key == null)
+        return FakeResponse.empty(404, "Not Found");
+      response = accessKeyJson(key);
+    }
+    return ok(200, "OK", response);
+  }
+
+  private FakeResponse putAccessKey(UUID caller, UUID writerId, UUID userId, UUID readerId, String type, JsonNode request) {
+    if (!caller.equals(writerId))
+      return FakeResponse.empty(403, "Forbidden");
+
+    synchronized (lock) {
+      accessKeys.put(akKey(writerId, userId, readerId, type), new StoredKey(request.get("eak").asText(), caller));
+    }
+    return FakeResponse.empty(201, "Created");
+  }
+
+  private FakeResponse deleteAccessKey(UUID caller, UUID writerId, UUID userId, UUID readerId, String type) {
+    if (!caller.equals(writerId))
+      return FakeResponse.empty(403, "Forbidden");
+
+    synchronized (lock) {
+      accessKeys.remove(akKey(writerId, userId, readerId, type));
+    }
+    return FakeResponse.empty(204, "No Content");
+  }
+
+  private FakeResponse putPolicy(UUID caller, UUID writerId, UUID readerId, String type, JsonNode request) {
+    if (!caller.equals(writerId))
+      return FakeResponse.empty(403, "Forbidden");
+
+    synchronized (lock) {
+      if (request.has("allow"))
+        policies.put(policyKey(writerId, readerId, type), true);
+      else if (request.has("deny"))
+        policies.remove(policyKey(writerId, readerId, type));
+    }
+    return FakeResponse.empty(201, "Created");
+  }
+
+  private FakeResponse incoming(UUID caller) throws IOException {
+    ArrayNode response = nodes.arrayNode();
+    synchronized (lock) {
+      for (String key : policies.keySet()) {
+        String[] parts = key.split("/", 3);
+        if (parts[1].equals(caller.toString())) {
+          ClientInfo writer = clients.get(UUID.fromString(parts[0]));
+          ObjectNode policy = response.addObject();
+          policy.put("writer_id", parts[0]);
+          policy.put("writer_name", writer == null ? "" : writer.name);
+          policy.put("record_type", parts[2]);
+        }
+      }
+    }
+    return ok(200, "OK", response);
+  }
+
+  private FakeResponse outgoing(UUID caller) throws IOException {
+    ArrayNode response = nodes.arrayNode();
+    synchronized (lock) {
+      for (String key : policies.keySet()) {
+        String[] parts = key.split("/", 3);
+        if (parts[0].equals(caller.toString())) {
+          ClientInfo reader = clients.get(UUID.fromString(parts[1]));
+          ObjectNode policy = response.addObject();
+          policy.put("reader_id", parts[1]);
+          policy.put("reader_name", reader == null ? "" : reader.name);
+          policy.put("record_type", parts[2]);
+        }
+      }
+    }
+    return ok(200, "OK", response);
+  }
+}
@@ -0,0 +1,121 @@
+package com.tozny.e3db.fake;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a {@link FakeE3DB} instance over HTTP, on the loopback interface.
+ *
+ * <pre>
+ * FakeE3DBServer server = FakeE3DBServer.start(new FakeE3DB().setLatency(20, 10));
+ * Client.register("any-token", "client", server.url(), handler);
+ * ...
+ * server.stop();
+ * </pre>
+ *
+ * <p>Uses only the HTTP server built into the JDK, so it runs on any plain JVM.
+ */
+public class FakeE3DBServer {
+  static {
+    // Otherwise small responses can wait on the client's delayed ACK (about 40ms each).
+    if (System.getProperty("sun.net.httpserver.nodelay") == null)
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final FakeE3DB e3db;
+
+  private FakeE3DBServer(HttpServer server, ExecutorService executor, FakeE3DB e3db) {
+    this.server = server;
+    this.executor = executor;
+    this.e3db = e3db;
+  }
+
+  /**
+   * Start serving on an ephemeral port.
+   */
+  public static FakeE3DBServer start(FakeE3DB e3db) throws IOException {
+    return start(e3db, 0);
+  }
+
+  /**
+   * Start serving on the given port (0 picks an ephemeral port).
+   */
+  public static FakeE3DBServer start(final FakeE3DB e3db, int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    ExecutorService executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          FakeResponse response = e3db.handle(exchange.getRequestMethod(),
+            exchange.getRequestURI().getPath(),
+            exchange.getRequestURI().getRawQuery(),
+            exchange.getRequestHeaders().getFirst("Authorization"),
+            readAll(exchange.getRequestBody()));
+
+          for (Map.Entry<String, String> header : response.headers.entrySet())
+            exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+
+          if (response.body.length > 0) {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.code, response.body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(response.body);
+            out.close();
+          } else {
+            exchange.sendResponseHeaders(response.code, -1);
+          }
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+    return new FakeE3DBServer(server, executor, e3db);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1)
+      out.write(buffer, 0, read);
+    return out.toByteArray();
+  }
+
+  /**
+   * The base URL of this server (e.g., {@code http://127.0.0.1:51234}), suitable for {@code ClientBuilder.setHost}.
+   */
+  public String url() {
+    return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+  }
+
+  /**
+   * The instance answering requests.
+   */
+  public FakeE3DB e3db() {
+    return e3db;
+  }
+
+  /**
+   * Stop serving and release the port.
+   */
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,51 @@
+package com.tozny.e3db.fake;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A response produced by {@link FakeE3DB}.
+ */
+public class FakeResponse {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * HTTP status code.
+   */
+  public final int code;
+  /**
+   * HTTP status message.
+   */
+  public final String message;
+  /**
+   * Response body; empty (never null) if the response has no body.
+   */
+  public final byte[] body;
+  /**
+   * Additional response headers (not including {@code Content-Type}).
+   */
+  public final Map<String, String> headers;
+
+  FakeResponse(int code, String message, byte[] body, Map<String, String> headers) {
+    this.code = code;
+    this.message = message;
+    this.body = body == null ? new byte[0] : body;
+    this.headers = Collections.unmodifiableMap(headers);
+  }
+
+  static FakeResponse json(int code, String message, String body) {
+    return new FakeResponse(code, message, body.getBytes(UTF8), new HashMap<String, String>());
+  }
+
+  static FakeResponse empty(int code, String message) {
+    return new FakeResponse(code, message, null, new HashMap<String, String>());
+  }
+
+  static FakeResponse throttled(int retryAfterSeconds) {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Retry-After", Integer.toString(retryAfterSeconds));
+    return new FakeResponse(429, "Too Many Requests", null, headers);
+  }
+}
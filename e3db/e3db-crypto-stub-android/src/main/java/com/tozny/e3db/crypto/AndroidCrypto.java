@@ -3,6 +3,9 @@ package com.tozny.e3db.crypto;
 import com.tozny.e3db.CipherWithNonce;
 import com.tozny.e3db.Crypto;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 public class AndroidCrypto implements Crypto {
   @Override
   public CipherWithNonce encryptSecretBox(byte[] message, byte[] key) {
@@ -14,6 +17,26 @@ public class AndroidCrypto implements Crypto {
     throw new IllegalStateException();
   }
 
+  @Override
+  public List<CipherWithNonce> encryptSecretBoxes(List<byte[]> messages, List<byte[]> keys) {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public List<byte[]> decryptSecretBoxes(List<CipherWithNonce> messages, List<byte[]> keys) {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public CipherWithNonce encryptSecretBox(ByteBuffer message, byte[] key) {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public int decryptSecretBox(CipherWithNonce message, byte[] key, ByteBuffer destination) {
+    throw new IllegalStateException();
+  }
+
   @Override
   public CipherWithNonce encryptBox(byte[] message, byte[] publicKey, byte[] privateKey) {
     throw new IllegalStateException();
@@ -24,6 +47,21 @@ public class AndroidCrypto implements Crypto {
     throw new IllegalStateException();
   }
 
+  @Override
+  public byte[] precomputeBoxKey(byte[] publicKey, byte[] privateKey) {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public CipherWithNonce encryptBoxPrecomputed(byte[] message, byte[] sharedKey) {
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public byte[] decryptBoxPrecomputed(CipherWithNonce message, byte[] sharedKey) {
+    throw new IllegalStateException();
+  }
+
   @Override
   public byte[] getPublicKey(byte[] privateKey) {
     throw new IllegalStateException();
@@ -38,4 +76,9 @@ public class AndroidCrypto implements Crypto {
   public byte[] newSecretKey() {
     throw new IllegalStateException();
   }
+
+  @Override
+  public List<byte[]> newSecretKeys(int count) {
+    throw new IllegalStateException();
+  }
 }
@@ -0,0 +1,180 @@
+package com.tozny.e3db;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds decrypted access keys, so that repeated operations on the same
+ * record type do not need to fetch and decrypt the key every time.
+ *
+ * <p>Entries are keyed by writer, user, reader and record type. Each entry expires after a fixed
+ * time-to-live, and the least-recently used entry is evicted when the cache grows past its
+ * maximum size. A maximum size of 0 disables caching.
+ *
+ * <p>The cache also remembers keys that E3DB reported as not existing (using a separate,
+ * usually shorter, time-to-live). Lookups for such keys return {@link #MISSING}.
+ */
+class AccessKeyCache {
+  /**
+   * Returned by {@link #get(UUID, UUID, UUID, String)} when E3DB recently reported that
+   * the access key does not exist. Compare by identity.
+   */
+  static final byte[] MISSING = new byte[0];
+
+  private static class Key {
+    private final UUID writerId;
+    private final UUID userId;
+    private final UUID readerId;
+    private final String type;
+
+    private Key(UUID writerId, UUID userId, UUID readerId, String type) {
+      this.writerId = writerId;
+      this.userId = userId;
+      this.readerId = readerId;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+
+      Key other = (Key) o;
+      return writerId.equals(other.writerId) &&
+        userId.equals(other.userId) &&
+        readerId.equals(other.readerId) &&
+        type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = writerId.hashCode();
+      result = 31 * result + userId.hashCode();
+      result = 31 * result + readerId.hashCode();
+      result = 31 * result + type.hashCode();
+      return result;
+    }
+  }
+
+  private static class Item {
+    private final byte[] accessKey;
+    private final long expiresAt;
+
+    private Item(byte[] accessKey, long expiresAt) {
+      this.accessKey = accessKey;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final long ttlNanos;
+  private final long missingTtlNanos;
+  private final int maxEntries;
+  private final LinkedHashMap<Key, Item> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong negativeHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  AccessKeyCache(long ttl, TimeUnit unit, long missingTtl, TimeUnit missingUnit, final int maxEntries) {
+    this.ttlNanos = unit.toNanos(ttl);
+    this.missingTtlNanos = missingUnit.toNanos(missingTtl);
+    this.maxEntries = maxEntries;
+    // Access-ordered, so the eldest entry is always the least-recently used one.
+    this.entries = new LinkedHashMap<Key, Item>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Item> eldest) {
+        if (size() > maxEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached access key, {@link #MISSING} if the key recently
+   * did not exist, or {@code null} if nothing (unexpired) is held.
+   */
+  byte[] get(UUID writerId, UUID userId, UUID readerId, String type) {
+    byte[] accessKey = peek(writerId, userId, readerId, type);
+    if (accessKey == null)
+      misses.incrementAndGet();
+    else if (accessKey == MISSING)
+      negativeHits.incrementAndGet();
+    else
+      hits.incrementAndGet();
+    return accessKey;
+  }
+
+  /**
+   * Like {@link #get(UUID, UUID, UUID, String)}, but not counted in {@link #stats()}. For
+   * lookups that would not otherwise need a request to E3DB (for example, when a query
+   * response already includes the encrypted key).
+   */
+  byte[] peek(UUID writerId, UUID userId, UUID readerId, String type) {
+    if (maxEntries == 0)
+      return null;
+
+    Key key = new Key(writerId, userId, readerId, type);
+    synchronized (entries) {
+      Item item = entries.get(key);
+      if (item != null) {
+        if (item.expiresAt - System.nanoTime() > 0)
+          return item.accessKey;
+        entries.remove(key);
+      }
+    }
+    return null;
+  }
+
+  void put(UUID writerId, UUID userId, UUID readerId, String type, byte[] accessKey) {
+    store(new Key(writerId, userId, readerId, type), accessKey, ttlNanos);
+  }
+
+  /**
+   * Remember that E3DB reported the given access key does not exist.
+   *
+   * <p>Does not replace a key already cached: that key was stored after the lookup
+   * reporting it missing began (only {@link #put} stores keys), so is more recent.
+   */
+  void putMissing(UUID writerId, UUID userId, UUID readerId, String type) {
+    store(new Key(writerId, userId, readerId, type), MISSING, missingTtlNanos);
+  }
+
+  private void store(Key key, byte[] accessKey, long ttl) {
+    if (maxEntries == 0 || ttl <= 0)
+      return;
+
+    long now = System.nanoTime();
+    Item item = new Item(accessKey, now + ttl);
+    synchronized (entries) {
+      if (accessKey == MISSING) {
+        Item current = entries.get(key);
+        if (current != null && current.accessKey != MISSING && current.expiresAt - now > 0)
+          return;
+      }
+      entries.put(key, item);
+    }
+  }
+
+  void remove(UUID writerId, UUID userId, UUID readerId, String type) {
+    synchronized (entries) {
+      entries.remove(new Key(writerId, userId, readerId, type));
+    }
+  }
+
+  CacheStats stats() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new CacheStats(hits.get(), negativeHits.get(), misses.get(), evictions.get(), size);
+  }
+}
@@ -0,0 +1,256 @@
+package com.tozny.e3db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of operations a client runs (and holds waiting) at once, applying
+ * an {@link AdmissionPolicy} when both limits are reached.
+ *
+ * <p>Operations are dispatched to an underlying {@link Executor} in priority order (oldest first
+ * within a priority). The underlying executor should not reject work itself; this class provides
+ * all bounding.
+ */
+class Admission {
+  static final int PRIORITY_LOW = 0;
+  static final int PRIORITY_NORMAL = 1;
+  private static final int PRIORITIES = 2;
+
+  /**
+   * Notified when an operation will never run.
+   */
+  interface Rejection {
+    void rejected(E3DBRejectedException e);
+  }
+
+  /**
+   * An operation that may finish after {@code run} returns (for example, once an HTTP
+   * response arrives). It must call {@code done} when finished; the operation holds its
+   * slot until then.
+   */
+  interface Operation {
+    void run(Runnable done);
+  }
+
+  private static class Task {
+    private final int priority;
+    private final Operation operation;
+    private final Rejection rejection;
+
+    private Task(int priority, Operation operation, Rejection rejection) {
+      this.priority = priority;
+      this.operation = operation;
+      this.rejection = rejection;
+    }
+  }
+
+  // Set while a thread runs an operation admitted by this instance, so
+  // BLOCK never waits on a thread that has to finish to make room.
+  private final ThreadLocal<Boolean> inOperation = new ThreadLocal<>();
+
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final int queueDepth;
+  private final AdmissionPolicy policy;
+
+  private final Object lock = new Object();
+  private final List<ArrayDeque<Task>> queues;
+  private int queued = 0;
+  private int running = 0;
+  private long rejected = 0;
+  private long shed = 0;
+
+  Admission(Executor executor, int maxConcurrency, int queueDepth, AdmissionPolicy policy) {
+    this.executor = executor;
+    this.maxConcurrency = maxConcurrency;
+    this.queueDepth = queueDepth;
+    this.policy = policy;
+    this.queues = new ArrayList<>(PRIORITIES);
+    for (int i = 0; i < PRIORITIES; i++)
+      queues.add(new ArrayDeque<Task>());
+  }
+
+  void submit(int priority, final Runnable runnable, Rejection rejection) {
+    submit(priority, new Operation() {
+      @Override
+      public void run(Runnable done) {
+        try {
+          runnable.run();
+        } finally {
+          done.run();
+        }
+      }
+    }, rejection);
+  }
+
+  void submit(int priority, Operation operation, Rejection rejection) {
+    Task task = new Task(priority, operation, rejection);
+    Task dropped = null;
+    boolean start = false;
+
+    synchronized (lock) {
+      while (true) {
+        if (running < maxConcurrency) {
+          running++;
+          start = true;
+        } else if (queued < queueDepth) {
+          enqueue(task);
+        } else {
+          switch (policy) {
+            case BLOCK:
+              if (inOperation.get() != null) {
+                enqueue(task);
+                break;
+              }
+              try {
+                lock.wait();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected++;
+                dropped = task;
+                break;
+              }
+              continue;
+            case SHED:
+              Task victim = lowest();
+              if (victim != null && victim.priority <= task.priority) {
+                queues.get(victim.priority).pollFirst();
+                queued--;
+                enqueue(task);
+                dropped = victim;
+                shed++;
+              } else {
+                rejected++;
+                dropped = task;
+              }
+              break;
+            default:
+              rejected++;
+              dropped = task;
+              break;
+          }
+        }
+        break;
+      }
+    }
+
+    if (start)
+      start(task);
+    if (dropped != null)
+      dropped.rejection.rejected(new E3DBRejectedException("Too many operations pending (" + maxConcurrency + " running, " + queueDepth + " queued)."));
+  }
+
+  /**
+   * Runs the continuation of an operation that has already been admitted (and so is not
+   * subject to any limits) on the executor.
+   */
+  void resume(final Runnable continuation) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        inOperation.set(Boolean.TRUE);
+        try {
+          continuation.run();
+        } finally {
+          inOperation.remove();
+        }
+      }
+    });
+  }
+
+  QueueStats stats() {
+    synchronized (lock) {
+      return new QueueStats(queued, running, rejected, shed);
+    }
+  }
+
+  private void enqueue(Task task) {
+    queues.get(task.priority).addLast(task);
+    queued++;
+  }
+
+  private Task lowest() {
+    for (int i = 0; i < PRIORITIES; i++) {
+      if (!queues.get(i).isEmpty())
+        return queues.get(i).peekFirst();
+    }
+    return null;
+  }
+
+  private Task next() {
+    for (int i = PRIORITIES - 1; i >= 0; i--) {
+      Task task = queues.get(i).pollFirst();
+      if (task != null) {
+        queued--;
+        return task;
+      }
+    }
+    return null;
+  }
+
+  private void start(Task task) {
+    while (task != null) {
+      try {
+        executor.execute(wrap(task));
+        return;
+      } catch (RejectedExecutionException e) {
+        Task next;
+        synchronized (lock) {
+          rejected++;
+          next = finished();
+        }
+        task.rejection.rejected(new E3DBRejectedException("Executor rejected operation."));
+        task = next;
+      }
+    }
+  }
+
+  private Runnable wrap(final Task task) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        final AtomicBoolean released = new AtomicBoolean(false);
+        Runnable done = new Runnable() {
+          @Override
+          public void run() {
+            if (!released.compareAndSet(false, true))
+              return;
+            Task next;
+            synchronized (lock) {
+              next = finished();
+            }
+            // Hand the next operation back to the executor (rather than running it on this thread)
+            // so executors shared between clients can schedule fairly.
+            start(next);
+          }
+        };
+
+        inOperation.set(Boolean.TRUE);
+        try {
+          task.operation.run(done);
+        } catch (Throwable e) {
+          done.run();
+          throw e;
+        } finally {
+          inOperation.remove();
+        }
+      }
+    };
+  }
+
+  /**
+   * Called (holding {@code lock}) when an operation finishes; returns the next operation to
+   * run in its place, or {@code null} if nothing is waiting.
+   */
+  private Task finished() {
+    Task next = next();
+    if (next == null)
+      running--;
+    lock.notifyAll();
+    return next;
+  }
+}
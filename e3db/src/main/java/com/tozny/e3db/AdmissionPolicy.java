@@ -0,0 +1,31 @@
+package com.tozny.e3db;
+
+/**
+ * Determines what a {@link Client} does with a new operation when its queue of pending
+ * operations is full.
+ *
+ * <p>Each client runs at most {@link ClientBuilder#setMaxConcurrency(int)} operations at once, and holds
+ * at most {@link ClientBuilder#setQueueDepth(int)} operations waiting to run. This policy applies
+ * once both limits are reached. Use {@link ClientBuilder#setAdmissionPolicy(AdmissionPolicy)} to choose
+ * one.
+ */
+public enum AdmissionPolicy {
+  /**
+   * The calling thread waits until there is room in the queue.
+   *
+   * <p>Do not use this policy on the Android UI thread. Operations started from a thread that is
+   * already running an operation for the same client (for example, from a {@link ResultHandler}
+   * on plain Java) are queued without waiting, as waiting there could deadlock.
+   */
+  BLOCK,
+  /**
+   * The new operation is not started. Its {@link ResultHandler} receives an {@link E3DBRejectedException}.
+   */
+  FAIL_FAST,
+  /**
+   * The oldest waiting operation with the lowest priority is dropped, and its {@link ResultHandler} receives an
+   * {@link E3DBRejectedException}. If the new operation has a lower priority than everything waiting,
+   * the new operation is dropped instead.
+   */
+  SHED
+}
@@ -0,0 +1,47 @@
+package com.tozny.e3db;
+
+/**
+ * A point-in-time snapshot of the access key cache held by a {@link Client}.
+ *
+ * <p>Use {@link Client#accessKeyCacheStats()} to obtain an instance. Counters are cumulative
+ * over the lifetime of the client.
+ */
+public class CacheStats {
+  /**
+   * Number of lookups answered from the cache, without contacting E3DB.
+   */
+  public final long hits;
+  /**
+   * Number of lookups answered from the cache with "no such access key", without contacting E3DB.
+   */
+  public final long negativeHits;
+  /**
+   * Number of lookups that required a request to E3DB.
+   */
+  public final long misses;
+  /**
+   * Number of entries removed because the cache reached its maximum size.
+   */
+  public final long evictions;
+  /**
+   * Number of entries currently held (including any that have expired but not yet been removed).
+   */
+  public final int size;
+
+  CacheStats(long hits, long negativeHits, long misses, long evictions, int size) {
+    this.hits = hits;
+    this.negativeHits = negativeHits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.size = size;
+  }
+
+  /**
+   * Fraction of lookups answered from the cache (including negative hits), between 0 and 1. Returns 0 if no
+   * lookups have occurred.
+   */
+  public double hitRate() {
+    long total = hits + negativeHits + misses;
+    return total == 0 ? 0.0 : (double) (hits + negativeHits) / total;
+  }
+}
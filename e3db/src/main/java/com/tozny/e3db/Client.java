@@ -3,39 +3,49 @@ package com.tozny.e3db;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.tozny.e3db.crypto.AndroidCrypto;
-import com.tozny.e3db.crypto.KaliumCrypto;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 import okio.ByteString;
+import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Retrofit;
 
 import static com.tozny.e3db.Base64.decodeURL;
@@ -54,8 +64,24 @@ import static com.tozny.e3db.Checks.*;
  * All E3DB network communication occurs on a background thread (created by the class). Results are delivered via the callback argument given. On Android,
  * results are delivered on the UI thread. On all other platforms, results are delivered on the same background thread that performed the E3DB operation.
  *
+ * <p>Each operation also has a variant ending in {@code Async} (for example, {@link #writeAsync(String, RecordData, Map)}) that returns
+ * a {@link ResultFuture} instead of taking a callback. Futures always complete on the background thread, never the UI thread; they can be
+ * waited on, composed, and converted to other future types. See {@link ResultFuture} for details.
+ *
  * <p>Note that no E3DB operations have a defined timeout &mdash; your application is responsible for setting timeouts and performing appropriate action.
  *
+ * <p>Each client limits how many operations run at once, and how many can wait to run. When both
+ * limits are reached, new operations are handled according to an {@link AdmissionPolicy}; by default,
+ * they fail with an {@link E3DBRejectedException}. See {@link ClientBuilder#setMaxConcurrency(int)},
+ * {@link ClientBuilder#setQueueDepth(int)} and {@link ClientBuilder#setAdmissionPolicy(AdmissionPolicy)}. By default, all clients
+ * share one pool of background threads; use {@link ClientBuilder#setExecutor(Executor)} or
+ * {@link ClientBuilder#setDedicatedThreads(int)} to run a client's operations elsewhere.
+ *
+ * <p>By default, an operation holds a background thread while it waits for E3DB to respond. Clients built with
+ * {@link ClientBuilder#setNonBlocking(boolean)} instead release the thread during each HTTP call, so many more
+ * operations can be in flight than there are background threads. On Java 21 and later,
+ * {@link ClientBuilder#setVirtualThreads(boolean)} gives the same benefit by running each operation on its own virtual thread.
+ *
  * <h2><i>ResultHandler</i> &amp; <i>Result</i> Values</h2>
  * The {@link ResultHandler} callback accepts a {@link Result} value, which signals whether an error occurred or if the operation completed
  * successfully. The {@link Result#isError()} method will return {@code true} if some error
@@ -88,10 +114,12 @@ import static com.tozny.e3db.Checks.*;
  *
  * Records can be written with the {@link #write(String, RecordData, Map, ResultHandler)} method,
  * updated with {@link #update(RecordMeta, RecordData, Map, ResultHandler)}, and deleted with {@link #delete(UUID, String, ResultHandler)}.
+ * To write many records of the same type, use {@link #writeAll(String, Iterable, Map, ResultHandler)}.
  *
  * <h1>Reading &amp; Querying Records</h1>
  *
- * You can read a single record with the {@link #read(UUID, ResultHandler)} method.
+ * You can read a single record with the {@link #read(UUID, ResultHandler)} method, or several at once
+ * with {@link #readMany(Collection, ResultHandler)}.
  *
  * <p>Multiple records (matching some criteria) can be read using the {@link #query(QueryParams, ResultHandler)} method. You must pass a {@link QueryParams} instance
  * to specify the selection critera for records; use the {@link QueryParamsBuilder} object to build the query.
@@ -101,6 +129,9 @@ import static com.tozny.e3db.Checks.*;
  * in a given page of results. Pass the {@code last()} value obtained to the {@link QueryParamsBuilder#setAfter}) method to
  * obtain records following the last record.
  *
+ * <p>Alternatively, {@link #queryAll(QueryParams)} returns an iterator over all matching records that fetches
+ * each page (in the background, ahead of time) for you.
+ *
  * <h1>Sharing</h1>
  * Sharing allows one client to give read access to a set of that client's records to another client, without compromising end-to-end encryption. To share
  * records, a client must know the ID of the client they wish to share with. The SDK does not provide support for looking up client IDs - you will have to
@@ -112,20 +143,35 @@ import static com.tozny.e3db.Checks.*;
 public class Client {
   private static final ObjectMapper mapper = new ObjectMapper();
   private static final MediaType APPLICATION_JSON = MediaType.parse("application/json");
-  private static final SimpleDateFormat iso8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
   private static final MediaType PLAIN_TEXT = MediaType.parse("text/plain");
   private static final Executor backgroundExecutor;
   private static final Executor uiExecutor;
-  private static final Crypto crypto;
+  // Record IDs sent per request by readMany; keeps URLs under 2K characters.
+  private static final int READ_BATCH = 50;
+  // Search results parsed (and decrypted) at a time; bounds the JSON held for a page.
+  private static final int ROW_BATCH = 64;
+  private static final Runnable NOTHING = new Runnable() {
+    @Override
+    public void run() {
+    }
+  };
+  private static final Executor directExecutor = new Executor() {
+    @Override
+    public void execute(Runnable runnable) {
+      runnable.run();
+    }
+  };
   private static final String allow = "{\"allow\" : [ { \"read\": {} } ] }";
   private static final String deny = "{\"deny\" : [ { \"read\": {} } ] }";
 
   static {
-    backgroundExecutor = new ThreadPoolExecutor(1,
-      Runtime.getRuntime().availableProcessors(),
+    // Unbounded queue; each client limits its own pending operations (see Admission).
+    final int threads = Runtime.getRuntime().availableProcessors();
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,
+      threads,
       30,
       TimeUnit.SECONDS,
-      new LinkedBlockingQueue<Runnable>(10),
+      new LinkedBlockingQueue<Runnable>(),
       new ThreadFactory() {
         private int threadCount = 1;
         @Override
@@ -136,6 +182,8 @@ public class Client {
           return thread;
         }
       });
+    pool.allowCoreThreadTimeOut(true);
+    backgroundExecutor = pool;
 
     boolean isAndroid = false;
     try {
@@ -145,7 +193,6 @@ public class Client {
     }
 
     if (isAndroid) {
-      crypto = new AndroidCrypto();
       // Post results to UI thread
       uiExecutor = new Executor() {
         private final Handler handler = new Handler(Looper.getMainLooper());
@@ -156,7 +203,6 @@ public class Client {
         }
       };
     } else {
-      crypto = new KaliumCrypto();
       // Post results to current thread (whatever that is)
       uiExecutor = new Executor() {
         @Override
@@ -172,20 +218,44 @@ public class Client {
 
   private final UUID clientId;
   private final byte[] privateKey;
+  private final Crypto crypto;
   private final StorageAPI storageClient;
   private final ShareAPI shareClient;
+  private final AccessKeyCache akCache;
+  private final Admission admission;
+  private final boolean nonBlocking;
+  private final Map<String, List<Runnable>> creatingOwnAk = new HashMap<>();
+  private final AtomicInteger ownAkGeneration = new AtomicInteger(0);
+  private final int writeWindow;
+  private final int decryptParallelism;
+  private final Executor continuations = new Executor() {
+    @Override
+    public void execute(Runnable runnable) {
+      admission.resume(runnable);
+    }
+  };
 
-  Client(String apiKey, String apiSecret, UUID clientId, URI host, byte[] privateKey) {
+  Client(String apiKey, String apiSecret, UUID clientId, URI host, byte[] privateKey, AccessKeyCache akCache,
+         Executor executor, int maxConcurrency, int queueDepth, AdmissionPolicy admissionPolicy, boolean nonBlocking,
+         int writeWindow, int decryptParallelism, boolean proactiveTokenRefresh, Transport transport, Crypto crypto) {
     this.apiKey = apiKey;
     this.apiSecret = apiSecret;
     this.clientId = clientId;
     this.privateKey = privateKey;
+    this.crypto = crypto == null ? CryptoProviders.preferred() : crypto;
+    this.akCache = akCache;
+    this.admission = new Admission(executor == null ? backgroundExecutor : executor, maxConcurrency, queueDepth, admissionPolicy);
+    this.nonBlocking = nonBlocking;
+    this.writeWindow = writeWindow;
+    this.decryptParallelism = decryptParallelism;
+
+    okhttp3.Call.Factory calls = transport.callFactory(Collections.<Interceptor>singletonList(
+      new TokenInterceptor(apiKey, apiSecret, host, proactiveTokenRefresh, transport)));
 
     Retrofit build = new Retrofit.Builder()
-      .callbackExecutor(this.uiExecutor)
-      .client(new OkHttpClient.Builder()
-        .addInterceptor(new TokenInterceptor(apiKey, apiSecret, host))
-        .build())
+      // Callbacks from enqueued calls are dispatched by Op, not Retrofit.
+      .callbackExecutor(directExecutor)
+      .callFactory(calls)
       .baseUrl(host.resolve("/").toString())
       .build();
 
@@ -248,8 +318,219 @@ public class Client {
     }
   }
 
-  private void onBackground(Runnable runnable) {
-    backgroundExecutor.execute(runnable);
+  /**
+   * Continues an operation with the result of the previous step (usually, the response
+   * to an HTTP call).
+   */
+  private interface Step<T> {
+    void resume(T value) throws Throwable;
+  }
+
+  /**
+   * An operation in flight. Makes the operation's HTTP calls (blocking, or with {@code enqueue} when
+   * the client is non-blocking), delivers its result, and releases its slot.
+   */
+  private class Op<R> {
+    private final ResultHandler<R> handleResult;
+    private final Runnable done;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final List<Runnable> onFinish = new ArrayList<>();
+
+    private Op(ResultHandler<R> handleResult, Runnable done) {
+      this.handleResult = handleResult;
+      this.done = done;
+    }
+
+    void value(R r) {
+      if (finished.compareAndSet(false, true)) {
+        try {
+          uiValue(handleResult, r);
+        } finally {
+          finish();
+        }
+      }
+    }
+
+    void error(Throwable e) {
+      if (finished.compareAndSet(false, true)) {
+        try {
+          uiError(handleResult, e);
+        } finally {
+          finish();
+        }
+      }
+    }
+
+    /**
+     * Run {@code cleanup} when this operation finishes, however it finishes.
+     */
+    void onFinish(Runnable cleanup) {
+      synchronized (onFinish) {
+        onFinish.add(cleanup);
+      }
+    }
+
+    private void finish() {
+      try {
+        synchronized (onFinish) {
+          for (Runnable cleanup : onFinish)
+            cleanup.run();
+        }
+      } finally {
+        done.run();
+      }
+    }
+
+    <T> void resume(Step<T> step, T value) {
+      try {
+        step.resume(value);
+      } catch (Throwable e) {
+        error(e);
+      }
+    }
+
+    void call(Call<ResponseBody> call, final Step<retrofit2.Response<ResponseBody>> next) {
+      if (!nonBlocking) {
+        retrofit2.Response<ResponseBody> response;
+        try {
+          response = call.execute();
+        } catch (Throwable e) {
+          error(e);
+          return;
+        }
+        try {
+          resume(next, response);
+        } finally {
+          // Error bodies are never read; release the connection.
+          if (response.errorBody() != null)
+            response.errorBody().close();
+        }
+        return;
+      }
+
+      call.enqueue(new Callback<ResponseBody>() {
+        @Override
+        public void onResponse(Call<ResponseBody> call, retrofit2.Response<ResponseBody> response) {
+          // Leave the I/O thread as soon as possible; decryption and parsing
+          // run on the client's executor. A streamed body is read here first,
+          // so the executor never waits on the network.
+          try {
+            final retrofit2.Response<ResponseBody> buffered = buffer(response);
+            admission.resume(new Runnable() {
+              @Override
+              public void run() {
+                resume(next, buffered);
+              }
+            });
+          } catch (RejectedExecutionException | IOException e) {
+            error(e);
+          }
+        }
+
+        @Override
+        public void onFailure(Call<ResponseBody> call, Throwable e) {
+          error(e);
+        }
+      });
+    }
+  }
+
+  /**
+   * Reads the whole body (or error body) of a (streamed) response into memory, closing it, so that the
+   * connection is released before the response is handled.
+   */
+  private static retrofit2.Response<ResponseBody> buffer(retrofit2.Response<ResponseBody> response) throws IOException {
+    ResponseBody body = response.body();
+    if (body != null)
+      return retrofit2.Response.success(buffer(body), response.raw());
+
+    ResponseBody errorBody = response.errorBody();
+    if (errorBody != null)
+      return retrofit2.Response.error(buffer(errorBody), response.raw());
+    return response;
+  }
+
+  private static ResponseBody buffer(ResponseBody body) throws IOException {
+    Buffer buffer = new Buffer();
+    try {
+      body.source().readAll(buffer);
+    } finally {
+      body.close();
+    }
+    return ResponseBody.create(body.contentType(), buffer.size(), buffer);
+  }
+
+  /**
+   * One of several calls made at once by {@link #fanOut}.
+   */
+  private interface Branch {
+    void run(int i, Op<Void> branch) throws Throwable;
+
+    /**
+     * Called if branch {@code i} ends with an error.
+     */
+    void failed(int i, Throwable e);
+  }
+
+  /**
+   * Runs {@code count} branches at once, each as its own sub-operation of {@code op}, then continues
+   * with {@code next} once all have finished (whether or not they succeeded).
+   */
+  private void fanOut(final Op<?> op, final int count, final Branch branch, final Step<Void> next) {
+    if (count == 0) {
+      op.resume(next, null);
+      return;
+    }
+
+    final AtomicInteger remaining = new AtomicInteger(count);
+    for (int i = 0; i < count; i++) {
+      final int idx = i;
+      final Op<Void> sub = new Op<>(new ResultFuture.Completer<Void>() {
+        @Override
+        public void handle(Result<Void> r) {
+          if (r.isError())
+            branch.failed(idx, r.asError().other());
+          if (remaining.decrementAndGet() == 0)
+            op.resume(next, null);
+        }
+      }, NOTHING);
+
+      Runnable run = new Runnable() {
+        @Override
+        public void run() {
+          sub.resume(new Step<Void>() {
+            @Override
+            public void resume(Void ignored) throws Throwable {
+              branch.run(idx, sub);
+            }
+          }, null);
+        }
+      };
+      try {
+        admission.resume(run);
+      } catch (RejectedExecutionException e) {
+        run.run();
+      }
+    }
+  }
+
+  private <R> void onBackground(final ResultHandler<R> handleResult, final Step<Op<R>> operation) {
+    onBackground(Admission.PRIORITY_NORMAL, handleResult, operation);
+  }
+
+  private <R> void onBackground(int priority, final ResultHandler<R> handleResult, final Step<Op<R>> operation) {
+    admission.submit(priority, new Admission.Operation() {
+      @Override
+      public void run(Runnable done) {
+        Op<R> op = new Op<>(handleResult, done);
+        op.resume(operation, op);
+      }
+    }, new Admission.Rejection() {
+      @Override
+      public void rejected(E3DBRejectedException e) {
+        uiError(handleResult, e);
+      }
+    });
   }
 
   private static <R> void executeError(Executor executor, final ResultHandler<R> handler, final Throwable e) {
@@ -277,7 +558,9 @@ public class Client {
    */
 
   private <R> void uiError(final ResultHandler<R> handleError, final Throwable e) {
-    if (handleError != null)
+    if (handleError instanceof ResultFuture.Completer)
+      handleError.handle(new ErrorResult<R>(e));
+    else if (handleError != null)
       uiExecutor.execute(new Runnable() {
         @Override
         public void run() {
@@ -286,7 +569,9 @@ public class Client {
       });
   }
   private <R> void uiValue(final ResultHandler<R> handleResult, final R r) {
-    if (handleResult != null)
+    if (handleResult instanceof ResultFuture.Completer)
+      handleResult.handle(new ValueResult<R>(r));
+    else if (handleResult != null)
       uiExecutor.execute(new Runnable() {
         @Override
         public void run() {
@@ -306,12 +591,12 @@ public class Client {
     }
   }
 
-  private static RecordMeta getRecordMeta(JsonNode rawMeta) throws ParseException {
+  static RecordMeta getRecordMeta(JsonNode rawMeta) throws ParseException {
     UUID recordId = UUID.fromString(rawMeta.get("record_id").asText());
     UUID writerId = UUID.fromString(rawMeta.get("writer_id").asText());
     UUID userId = UUID.fromString(rawMeta.get("user_id").asText());
-    Date created = iso8601.parse(rawMeta.get("created").asText());
-    Date lastModified = iso8601.parse(rawMeta.get("last_modified").asText());
+    Date created = Iso8601.parse(rawMeta.get("created").asText());
+    Date lastModified = Iso8601.parse(rawMeta.get("last_modified").asText());
     String version = rawMeta.get("version").asText();
     String type = rawMeta.get("type").asText();
     JsonNode plain = rawMeta.has("plain") ? rawMeta.get("plain") : mapper.createObjectNode();
@@ -451,190 +736,528 @@ public class Client {
     }
   }
 
-  private QueryResponse doSearchRequest(QueryParams params) throws IOException, E3DBException, ParseException {
-    Map<String, Object> searchRequest = new HashMap<>();
+  private static String eakKey(JsonNode access_key) {
+    return access_key.get("eak").asText() + " " + access_key.get("authorizer_public_key").get("curve25519").asText();
+  }
 
-    if(params.after > 0)
-      searchRequest.put("after_index", params.after);
+  /**
+   * Decrypts the access keys for a batch of query results, adding them to {@code accessKeys} by {@link #eakKey}.
+   *
+   * <p>Rows with the same writer, user and type carry the same encrypted access key, so each
+   * distinct key is decrypted only once per page &mdash; or not at all, if it is in the access
+   * key cache from an earlier page (or operation).
+   */
+  private void pageAccessKeys(List<JsonNode> rows, Map<String, byte[]> accessKeys, int parallelism) {
+    final List<JsonNode> toDecrypt = new ArrayList<>();
+    for (JsonNode queryRecord : rows) {
+      JsonNode access_key = queryRecord.get("access_key");
+      if (access_key == null || !access_key.isObject())
+        continue;
+
+      String key = eakKey(access_key);
+      if (accessKeys.containsKey(key))
+        continue;
+
+      JsonNode meta = queryRecord.get("meta");
+      // The row carries the encrypted key, so a miss costs a decryption, not a request; not counted as a lookup.
+      byte[] cached = akCache.peek(UUID.fromString(meta.get("writer_id").asText()), UUID.fromString(meta.get("user_id").asText()),
+        clientId, meta.get("type").asText());
+      if (cached != null && cached != AccessKeyCache.MISSING) {
+        accessKeys.put(key, cached);
+      } else {
+        accessKeys.put(key, null);
+        toDecrypt.add(queryRecord);
+      }
+    }
 
-    if(params.count != -1)
-      searchRequest.put("count", params.count);
+    final byte[][] decrypted = new byte[toDecrypt.size()][];
+    Parallel.forEach(continuations, parallelism, decrypted.length, new Parallel.Body() {
+      @Override
+      public void run(int i) {
+        JsonNode access_key = toDecrypt.get(i).get("access_key");
+        decrypted[i] = crypto.decryptBox(
+          CipherWithNonce.decode(access_key.get("eak").asText()),
+          decodeURL(access_key.get("authorizer_public_key").get("curve25519").asText()),
+          privateKey
+        );
+      }
+    });
 
-    if(params.includeData != null)
-      searchRequest.put("include_data", params.includeData.booleanValue());
+    for (int i = 0; i < decrypted.length; i++) {
+      JsonNode queryRecord = toDecrypt.get(i);
+      JsonNode meta = queryRecord.get("meta");
+      akCache.put(UUID.fromString(meta.get("writer_id").asText()), UUID.fromString(meta.get("user_id").asText()),
+        clientId, meta.get("type").asText(), decrypted[i]);
+      accessKeys.put(eakKey(queryRecord.get("access_key")), decrypted[i]);
+    }
+  }
 
-    if(params.writerIds != null)
-      searchRequest.put("writer_ids", makeArray(params.writerIds));
+  /**
+   * Decrypts a batch of query results, in parallel (keeping their order), adding them to {@code page}.
+   */
+  private void decryptRows(final List<JsonNode> rows, final Map<String, byte[]> accessKeys, int parallelism, List<Record> page) throws Exception {
+    pageAccessKeys(rows, accessKeys, parallelism);
 
-    if(params.includeAllWriters != null)
-      searchRequest.put("include_all_writers", params.includeData.booleanValue());
+    final Record[] decrypted = new Record[rows.size()];
+    final AtomicReference<Exception> failure = new AtomicReference<>();
+    Parallel.forEach(continuations, parallelism, decrypted.length, new Parallel.Body() {
+      @Override
+      public void run(int currRow) {
+        try {
+          if (failure.get() == null)
+            decrypted[currRow] = makeRow(rows.get(currRow), accessKeys);
+        } catch (Exception e) {
+          failure.compareAndSet(null, e);
+        }
+      }
+    });
+    if (failure.get() != null)
+      throw failure.get();
 
-    if(params.userIds != null)
-      searchRequest.put("user_ids", makeArray(params.userIds));
+    page.addAll(Arrays.asList(decrypted));
+  }
 
-    if(params.recordIds != null)
-      searchRequest.put("record_ids", makeArray(params.recordIds));
+  private R makeRow(JsonNode queryRecord, Map<String, byte[]> accessKeys) throws ParseException, UnsupportedEncodingException {
+    JsonNode access_key = queryRecord.get("access_key");
+    if(access_key != null && access_key.isObject()) {
+      return makeR(accessKeys.get(eakKey(access_key)),
+        queryRecord.get("meta"),
+        queryRecord.get("record_data"),
+        crypto);
+    }
+    else {
+      return makeR(queryRecord.get("meta"));
+    }
+  }
 
-    if (params.types != null)
-      searchRequest.put("content_types", params.types.toArray());
+  private void doSearchRequest(final Op<?> op, final QueryParams params, final Step<QueryResponse> next) throws IOException {
+    final boolean includeData = params.includeData != null && params.includeData;
+    JsonRequestBody queryRequest = new JsonRequestBody() {
+      @Override
+      protected void write(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        if (params.after > 0)
+          gen.writeNumberField("after_index", params.after);
 
-    String content = mapper.writeValueAsString(searchRequest);
-    RequestBody queryRequest = RequestBody.create(APPLICATION_JSON, content);
-    retrofit2.Response<ResponseBody> execute = storageClient.query(queryRequest).execute();
-    if (execute.code() != 200)
-      throw E3DBException.find(execute.code(), execute.message());
+        if (params.count != -1)
+          gen.writeNumberField("count", params.count);
 
-    JsonNode results = mapper.readTree(execute.body().string());
+        if (params.includeData != null)
+          gen.writeBooleanField("include_data", params.includeData);
 
-    JsonNode currPage = results.get("results");
-    long nextIdx = results.get("last_index").asLong();
+        if (params.writerIds != null)
+          writeArray(gen, "writer_ids", params.writerIds);
 
-    ArrayList<Record> records = new ArrayList<>(currPage.size());
-    for (int currRow = 0; currRow < currPage.size(); currRow++) {
-      R record;
-      JsonNode queryRecord = currPage.get(currRow);
-      JsonNode access_key = queryRecord.get("access_key");
-      if(access_key != null && access_key.isObject()) {
-        record = makeR(crypto.decryptBox(
-            CipherWithNonce.decode(access_key.get("eak").asText()),
-            decodeURL(access_key.get("authorizer_public_key").get("curve25519").asText()),
-            privateKey
-          ),
-          queryRecord.get("meta"),
-          queryRecord.get("record_data"),
-          crypto);
-      }
-      else {
-        record = makeR(queryRecord.get("meta"));
+        if (params.includeAllWriters != null)
+          gen.writeBooleanField("include_all_writers", params.includeAllWriters);
+
+        if (params.userIds != null)
+          writeArray(gen, "user_ids", params.userIds);
+
+        if (params.recordIds != null)
+          writeArray(gen, "record_ids", params.recordIds);
+
+        if (params.types != null)
+          writeArray(gen, "content_types", params.types);
+        gen.writeEndObject();
       }
-      records.add(record);
-    }
+    };
+    op.call(storageClient.query(json(queryRequest)), new Step<retrofit2.Response<ResponseBody>>() {
+      @Override
+      public void resume(retrofit2.Response<ResponseBody> execute) throws Throwable {
+        if (execute.code() != 200)
+          throw E3DBException.find(execute.code(), execute.message());
+
+        // Parse the page as it arrives, one row at a time, decrypting rows in batches. Only a
+        // batch of rows is ever held as JSON; a large page is never read into one string or tree.
+        final int parallelism = includeData ? decryptParallelism : 1;
+        final Map<String, byte[]> accessKeys = new HashMap<>();
+        final ArrayList<Record> page = new ArrayList<>();
+        long nextIdx = -1;
+        JsonParser parser = mapper.getFactory().createParser(execute.body().byteStream());
+        try {
+          if (parser.nextToken() != JsonToken.START_OBJECT)
+            throw new E3DBException("Unexpected search response.");
+
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+              List<JsonNode> rows = new ArrayList<>(ROW_BATCH);
+              while (parser.nextToken() != JsonToken.END_ARRAY) {
+                rows.add(parser.<JsonNode>readValueAsTree());
+                if (rows.size() == ROW_BATCH) {
+                  decryptRows(rows, accessKeys, parallelism, page);
+                  rows.clear();
+                }
+              }
+              decryptRows(rows, accessKeys, parallelism, page);
+            } else if ("last_index".equals(field)) {
+              nextIdx = parser.getLongValue();
+            } else {
+              parser.skipChildren();
+            }
+          }
+        } finally {
+          parser.close();
+          execute.body().close();
+        }
 
-    return new QR(records, nextIdx);
+        next.resume(new QR(page, nextIdx));
+      }
+    });
   }
 
-  private String[] makeArray(List writerIds) {
-    String[] objects = new String[writerIds.size()];
-    int idx = 0;
-    for(Object id : writerIds) {
-      objects[idx++] = id.toString();
-    }
-    return objects;
+  /**
+   * Encrypts each value with its own data key, and each data key with the access key. All values are
+   * encrypted in a few batched calls, rather than several calls per value.
+   */
+  static List<String> encryptFields(byte[] accessKey, List<String> values, Crypto crypto) throws UnsupportedEncodingException {
+    List<byte[]> plains = new ArrayList<>(values.size());
+    for (String value : values)
+      plains.add(value.getBytes("UTF-8"));
+    List<byte[]> dks = crypto.newSecretKeys(values.size());
+    List<CipherWithNonce> edks = crypto.encryptSecretBoxes(dks, Collections.singletonList(accessKey));
+    List<CipherWithNonce> efs = crypto.encryptSecretBoxes(plains, dks);
+
+    List<String> fields = new ArrayList<>(values.size());
+    for (int i = 0; i < values.size(); i++)
+      fields.add(new StringBuilder(edks.get(i).toMessage()).append(".").append(efs.get(i).toMessage()).toString());
+    return fields;
   }
 
-  private static Map<String, String> encryptObject(byte[] accessKey, Map<String, String> fields, Crypto crypto) throws UnsupportedEncodingException {
-    Map<String, String> encFields = new HashMap<>();
+  /**
+   * The body for writing (or updating) a record. Fields are encrypted (together) here, once; writing the
+   * body only serializes them, so a retried or redirected request sends the same ciphertext.
+   */
+  JsonRequestBody recordBody(byte[] accessKey, final String type, final Map<String, String> fields, final Map<String, String> plain) throws IOException {
+    final List<String> names = new ArrayList<>(fields.size());
+    List<String> values = new ArrayList<>(fields.size());
     for (Map.Entry<String, String> entry : fields.entrySet()) {
-      byte[] dk = crypto.newSecretKey();
-
-      String encField = new StringBuilder(crypto.encryptSecretBox(dk, accessKey).toMessage()).append(".")
-        .append(crypto.encryptSecretBox(entry.getValue().getBytes("UTF-8"), dk).toMessage()).toString();
-      encFields.put(entry.getKey(), encField);
+      names.add(entry.getKey());
+      values.add(entry.getValue());
     }
-    return encFields;
+    final List<String> encrypted = encryptFields(accessKey, values, crypto);
+
+    return new JsonRequestBody() {
+      @Override
+      protected void write(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeObjectFieldStart("meta");
+        gen.writeStringField("writer_id", clientId.toString());
+        gen.writeStringField("user_id", clientId.toString());
+        gen.writeStringField("type", type.trim());
+        if (plain != null) {
+          gen.writeObjectFieldStart("plain");
+          for (Map.Entry<String, String> entry : plain.entrySet())
+            gen.writeStringField(entry.getKey(), entry.getValue());
+          gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("data");
+        for (int i = 0; i < names.size(); i++)
+          gen.writeStringField(names.get(i), encrypted.get(i));
+        gen.writeEndObject();
+        gen.writeEndObject();
+      }
+    };
   }
 
-  private static Map<String, String> decryptObject(byte[] accessKey, JsonNode record, Crypto crypto) throws UnsupportedEncodingException {
-    Map<String, String> decryptedFields = new HashMap<>();
+  /**
+   * A body for {@code request}. Non-blocking clients write the body now, so that serialization
+   * happens on the client's executor rather than OkHttp's I/O threads.
+   */
+  private RequestBody json(JsonRequestBody request) throws IOException {
+    return nonBlocking ? request.buffered() : request;
+  }
+
+  static Map<String, String> decryptObject(byte[] accessKey, JsonNode record, Crypto crypto) throws UnsupportedEncodingException {
+    List<String> names = new ArrayList<>(record.size());
+    List<CipherWithNonce> edks = new ArrayList<>(record.size());
+    List<CipherWithNonce> efs = new ArrayList<>(record.size());
     Iterator<String> keys = record.fieldNames();
     while (keys.hasNext()) {
       String key = keys.next();
       ER er = new ER(record.get(key).asText());
-      byte[] dk = crypto.decryptSecretBox(er.edk, accessKey);
-      String value = new String(crypto.decryptSecretBox(er.ef, dk), "UTF-8");
-      decryptedFields.put(key, value);
+      names.add(key);
+      edks.add(er.edk);
+      efs.add(er.ef);
     }
+
+    List<byte[]> dks = crypto.decryptSecretBoxes(edks, Collections.singletonList(accessKey));
+    List<byte[]> values = crypto.decryptSecretBoxes(efs, dks);
+    Map<String, String> decryptedFields = new HashMap<>();
+    for (int i = 0; i < names.size(); i++)
+      decryptedFields.put(names.get(i), new String(values.get(i), "UTF-8"));
     return decryptedFields;
   }
+  /**
+   * Adds an access token to each request, fetching a new token when the current one is about to expire.
+   *
+   * <p>Only one thread fetches a token at a time; requests that need a new token meanwhile wait for
+   * that fetch, rather than fetching their own. If proactive refresh is on, a request made in the last
+   * quarter of a token's life starts fetching its replacement in the background, and goes ahead
+   * with the current token. A request rejected with 401 gets a new token and is retried once.
+   */
   private static class TokenInterceptor implements Interceptor {
     private final URI host;
 
     private final AuthAPI authClient;
     private final String basic;
+    private final boolean proactive;
+
+    private final Object refreshLock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile Token current = null;
+
+    private static class Token {
+      private final String token;
+      // Time (in ms) after which the token is replaced in the background, and after which it must be replaced.
+      private final long refreshAfter;
+      private final long replaceAfter;
+
+      private Token(String token, long refreshAfter, long replaceAfter) {
+        this.token = token;
+        this.refreshAfter = refreshAfter;
+        this.replaceAfter = replaceAfter;
+      }
+    }
 
-    private String token = null;
-
-    private Date replaceAfter = new Date(0L);
-    private TokenInterceptor(String apiKey, String apiSecret, URI host) {
+    private TokenInterceptor(String apiKey, String apiSecret, URI host, boolean proactive, Transport transport) {
       this.host = host;
+      this.proactive = proactive;
       try {
         this.basic = new StringBuffer("Basic ").append(ByteString.of(new StringBuffer(apiKey).append(":").append(apiSecret).toString().getBytes("UTF-8")).base64()).toString();
       } catch (UnsupportedEncodingException e) {
         throw new RuntimeException(e);
       }
       authClient = new Retrofit.Builder()
+        .callFactory(transport.callFactory(Collections.<Interceptor>emptyList()))
         .baseUrl(host.resolve("/").toString())
         .build()
         .create(AuthAPI.class);
     }
 
+    private Token fetch() throws IOException {
+      long now = System.currentTimeMillis();
+      retrofit2.Response<ResponseBody> response = authClient.getToken(basic, RequestBody.create(PLAIN_TEXT, "grant_type=client_credentials")).execute();
+      if (response.code() != 200)
+        throw new IOException("Unable to renew token.");
+
+      JsonNode token = mapper.readTree(response.body().byteStream());
+      long lifetime = TimeUnit.SECONDS.toMillis(Math.max(60, Math.min(15 * 60, token.get("expires_in").asInt() - 60)));
+      return new Token(token.get("access_token").asText(), now + lifetime * 3 / 4, now + lifetime);
+    }
+
+    /**
+     * A current token. Fetches a new token if there is none, if the current one has expired, or
+     * if it is {@code rejected} (and has not been replaced already).
+     */
+    private Token token(Token rejected) throws IOException {
+      Token token = current;
+      if (token != null && token != rejected && token.replaceAfter > System.currentTimeMillis())
+        return token;
+
+      synchronized (refreshLock) {
+        // Another request may have fetched a token while this one waited.
+        token = current;
+        if (token == null || token == rejected || token.replaceAfter <= System.currentTimeMillis()) {
+          token = fetch();
+          current = token;
+        }
+        return token;
+      }
+    }
+
+    private void refreshInBackground(final Token token) {
+      if (!refreshing.compareAndSet(false, true))
+        return;
+
+      try {
+        HttpTransport.ioExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              synchronized (refreshLock) {
+                if (current == token)
+                  current = fetch();
+              }
+            } catch (IOException e) {
+              // The token is still valid; requests fetch a new one when it expires.
+            } finally {
+              refreshing.set(false);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        refreshing.set(false);
+      }
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
       Request req = chain.request();
       if (req.header("Authorization") != null) {
         return chain.proceed(req);
       } else {
-        if (replaceAfter.before(new Date())) {
-          retrofit2.Response<ResponseBody> response = authClient.getToken(basic, RequestBody.create(PLAIN_TEXT, "grant_type=client_credentials")).execute();
-          if (response.code() != 200)
-            throw new IOException("Unable to renew token.");
-
-          JsonNode token = mapper.readTree(response.body().string());
-          Calendar c = Calendar.getInstance();
-          c.add(Calendar.SECOND, Math.max(60, Math.min(15 * 60, token.get("expires_in").asInt() - 60)));
-          replaceAfter = c.getTime();
-          this.token = token.get("access_token").asText();
-        }
+        Token token = token(null);
+        if (proactive && token.refreshAfter <= System.currentTimeMillis())
+          refreshInBackground(token);
 
-        return chain.proceed(req.newBuilder().addHeader("Authorization", "Bearer " + token).build());
+        Response response = chain.proceed(req.newBuilder().addHeader("Authorization", "Bearer " + token.token).build());
+        if (response.code() != 401)
+          return response;
+
+        response.close();
+        token = token(token);
+        return chain.proceed(req.newBuilder().addHeader("Authorization", "Bearer " + token.token).build());
       }
     }
-
   }
 
-  private byte[] getOwnAccessKey(String type) throws E3DBException, IOException {
-    byte[] ak = getAccessKey(this.clientId, this.clientId, this.clientId, type);
-    if (ak == null) {
-      // Write new AK
-      ak = crypto.newSecretKey();
-      setAccessKey(this.clientId, this.clientId, this.clientId, type, crypto.getPublicKey(this.privateKey), ak);
-    }
+  private void getOwnAccessKey(final Op<?> op, final String type, final Step<byte[]> next) throws Throwable {
+    final int generation = ownAkGeneration.get();
+    getAccessKey(op, this.clientId, this.clientId, this.clientId, type, new Step<byte[]>() {
+      @Override
+      public void resume(byte[] ak) throws Throwable {
+        if (ak != null) {
+          next.resume(ak);
+          return;
+        }
 
-    return ak;
+        if (generation != ownAkGeneration.get()) {
+          // Some key was written since the lookup began; it may be this one.
+          getOwnAccessKey(op, type, next);
+          return;
+        }
+
+        // Only one operation creates the key; others wait and then look it up again (or
+        // try to create it themselves, if creation failed). Otherwise concurrent writers
+        // would each store a different key, and all but the last would lose their records.
+        synchronized (creatingOwnAk) {
+          List<Runnable> waiting = creatingOwnAk.get(type);
+          if (waiting != null) {
+            waiting.add(new Runnable() {
+              @Override
+              public void run() {
+                op.resume(new Step<Void>() {
+                  @Override
+                  public void resume(Void ignored) throws Throwable {
+                    getOwnAccessKey(op, type, next);
+                  }
+                }, null);
+              }
+            });
+            return;
+          }
+          creatingOwnAk.put(type, new ArrayList<Runnable>());
+        }
+
+        final AtomicBoolean released = new AtomicBoolean(false);
+        final Runnable release = new Runnable() {
+          @Override
+          public void run() {
+            if (!released.compareAndSet(false, true))
+              return;
+            List<Runnable> waiting;
+            synchronized (creatingOwnAk) {
+              waiting = creatingOwnAk.remove(type);
+            }
+            for (Runnable waiter : waiting) {
+              try {
+                admission.resume(waiter);
+              } catch (RejectedExecutionException e) {
+                waiter.run();
+              }
+            }
+          }
+        };
+        op.onFinish(release);
+
+        // Write new AK
+        final byte[] newAk = crypto.newSecretKey();
+        setAccessKey(op, clientId, clientId, clientId, type, crypto.getPublicKey(privateKey), newAk, new Step<Void>() {
+          @Override
+          public void resume(Void ignored) throws Throwable {
+            ownAkGeneration.incrementAndGet();
+            release.run();
+            next.resume(newAk);
+          }
+        });
+      }
+    });
   }
 
-  private void removeAccessKey(UUID writerId, UUID userId, UUID readerId, String type) throws IOException, E3DBException {
-    retrofit2.Response<ResponseBody> response = storageClient.deleteAccessKey(writerId.toString(), userId.toString(), readerId.toString(), type).execute();
-    if(response.code() != 204) {
-      throw E3DBException.find(response.code(), response.message());
-    }
+  private void removeAccessKey(Op<?> op, UUID writerId, UUID userId, UUID readerId, String type, final Step<Void> next) {
+    akCache.remove(writerId, userId, readerId, type);
+    op.call(storageClient.deleteAccessKey(writerId.toString(), userId.toString(), readerId.toString(), type), new Step<retrofit2.Response<ResponseBody>>() {
+      @Override
+      public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+        if(response.code() != 204) {
+          throw E3DBException.find(response.code(), response.message());
+        }
+        next.resume(null);
+      }
+    });
   }
 
-  private byte[] getAccessKey(UUID writerId, UUID userId, UUID readerId, String type) throws E3DBException, IOException {
-    // TODO: cache AKs.
-    retrofit2.Response<ResponseBody> response = storageClient.getAccessKey(writerId.toString(), userId.toString(), readerId.toString(), type).execute();
-    if (response.code() == 404) {
-      return null;
-    } else if (response.code() == 200) {
-      JsonNode eakResponse = mapper.readTree(response.body().string());
-      byte[] ak = crypto.decryptBox(CipherWithNonce.decode(eakResponse.get("eak").asText()),
-        decodeURL(eakResponse.get("authorizer_public_key").get("curve25519").asText()),
-        this.privateKey);
-      return ak;
+  private void getAccessKey(Op<?> op, final UUID writerId, final UUID userId, final UUID readerId, final String type, final Step<byte[]> next) throws Throwable {
+    byte[] cached = akCache.get(writerId, userId, readerId, type);
+    if (cached == AccessKeyCache.MISSING) {
+      next.resume(null);
+      return;
+    }
+    else if (cached != null) {
+      next.resume(cached);
+      return;
     }
-    else
-      throw E3DBException.find(response.code(), response.message());
+
+    op.call(storageClient.getAccessKey(writerId.toString(), userId.toString(), readerId.toString(), type), new Step<retrofit2.Response<ResponseBody>>() {
+      @Override
+      public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+        if (response.code() == 404) {
+          // Never for the client's own key: getOwnAccessKey creates a key when none is found, and would
+          // overwrite one written meanwhile by another instance with the same credentials.
+          if (!(writerId.equals(clientId) && readerId.equals(clientId)))
+            akCache.putMissing(writerId, userId, readerId, type);
+          next.resume(null);
+        } else if (response.code() == 200) {
+          JsonNode eakResponse = mapper.readTree(response.body().byteStream());
+          byte[] ak = crypto.decryptBox(CipherWithNonce.decode(eakResponse.get("eak").asText()),
+            decodeURL(eakResponse.get("authorizer_public_key").get("curve25519").asText()),
+            privateKey);
+          akCache.put(writerId, userId, readerId, type, ak);
+          next.resume(ak);
+        }
+        else
+          throw E3DBException.find(response.code(), response.message());
+      }
+    });
   }
 
-  private void setAccessKey(UUID writerId, UUID userId, UUID readerId, String type, byte[] readerKey, byte[] ak) throws E3DBException, IOException {
-    Map<String, String> eak = new HashMap<>();
-    eak.put("eak", crypto.encryptBox(ak, readerKey, this.privateKey).toMessage());
+  private void setAccessKey(Op<?> op, final UUID writerId, final UUID userId, final UUID readerId, final String type, byte[] readerKey, final byte[] ak, final Step<Void> next) throws IOException {
+    akCache.remove(writerId, userId, readerId, type);
+    final String eak = crypto.encryptBox(ak, readerKey, this.privateKey).toMessage();
+    RequestBody body = json(new JsonRequestBody() {
+      @Override
+      protected void write(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("eak", eak);
+        gen.writeEndObject();
+      }
+    });
+    op.call(storageClient.putAccessKey(writerId.toString(), userId.toString(), readerId.toString(), type, body), new Step<retrofit2.Response<ResponseBody>>() {
+      @Override
+      public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+        if (response.code() != 201) {
+          throw E3DBException.find(response.code(), response.message());
+        }
 
-    RequestBody body = RequestBody.create(APPLICATION_JSON, mapper.writeValueAsString(eak));
-    retrofit2.Response<ResponseBody> response = storageClient.putAccessKey(writerId.toString(), userId.toString(), readerId.toString(), type, body).execute();
-    if (response.code() != 201) {
-      throw E3DBException.find(response.code(), response.message());
-    }
+        akCache.put(writerId, userId, readerId, type, ak);
+        next.resume(null);
+      }
+    });
   }
 
   /**
@@ -646,7 +1269,7 @@ public class Client {
    * The returned value represents the key as a Base64URL-encoded string.
    */
   public static String newPrivateKey() {
-    byte [] key = crypto.newPrivateKey();
+    byte [] key = CryptoProviders.preferred().newPrivateKey();
     return encodeURL(key);
   }
 
@@ -661,7 +1284,7 @@ public class Client {
     checkNotEmpty(privateKey, "privateKey");
     byte[] arr = decodeURL(privateKey);
     checkNotEmpty(arr, "privateKey");
-    return encodeURL(crypto.getPublicKey(arr));
+    return encodeURL(CryptoProviders.preferred().getPublicKey(arr));
   }
 
   /**
@@ -671,6 +1294,26 @@ public class Client {
     return clientId;
   }
 
+  /**
+   * Statistics for the access key cache held by this client.
+   *
+   * <p>Access keys are fetched (and decrypted) on first use for a given record type, then cached
+   * according to the limits set by {@link ClientBuilder#setAccessKeyCacheTtl(long, TimeUnit)} and
+   * {@link ClientBuilder#setAccessKeyCacheSize(int)}.
+   */
+  public CacheStats accessKeyCacheStats() {
+    return akCache.stats();
+  }
+
+  /**
+   * Gauges and counters for operations pending on this client.
+   *
+   * <p>See {@link AdmissionPolicy} for how limits on pending operations are applied.
+   */
+  public QueueStats queueStats() {
+    return admission.stats();
+  }
+
   /**
    * Registers a new client. This method creates a new public/private key pair for the client
    * to use when encrypting and decrypting records.
@@ -686,6 +1329,7 @@ public class Client {
     checkNotEmpty(clientName, "clientName");
     checkNotEmpty(host, "host");
 
+    final Crypto crypto = CryptoProviders.preferred();
     final byte[] privateKey = crypto.newPrivateKey();
     final String publicKey = encodeURL(crypto.getPublicKey(privateKey));
 
@@ -719,15 +1363,25 @@ public class Client {
    * @param handleResult Handles the result of registration.
    */
   public static void register(final String token, final String clientName, final String publicKey, final String host, final ResultHandler<ClientCredentials> handleResult) {
+    register(token, clientName, publicKey, host, HttpTransport.shared(), handleResult);
+  }
+
+  /**
+   * Registers a new client with a given public key, using the given transport. Otherwise, the same as
+   * {@link #register(String, String, String, String, ResultHandler)}.
+   *
+   * @param transport Transport for the registration request; see {@link ClientBuilder#setTransport(Transport)}.
+   */
+  public static void register(final String token, final String clientName, final String publicKey, final String host, Transport transport, final ResultHandler<ClientCredentials> handleResult) {
     checkNotEmpty(token, "token");
     checkNotEmpty(clientName, "clientName");
     checkNotEmpty(publicKey, "publicKey");
     checkNotEmpty(host, "host");
+    checkNotNull(transport, "transport");
 
     final RegisterAPI registerClient = new Retrofit.Builder()
       .callbackExecutor(uiExecutor)
-      .client(new OkHttpClient.Builder()
-        .build())
+      .callFactory(transport.callFactory(Collections.<Interceptor>emptyList()))
       .baseUrl(URI.create(host).resolve("/").toString())
       .build().create(RegisterAPI.class);
 
@@ -735,23 +1389,26 @@ public class Client {
       @Override
       public void run() {
         try {
-          Map<String, String> publicKeyInfo = new HashMap<>();
-          publicKeyInfo.put("curve25519", publicKey);
-
-          Map<String, Object> clientInfo = new HashMap<>();
-          clientInfo.put("name", clientName);
-          clientInfo.put("public_key", publicKeyInfo);
-
-          Map<String, Object> registerInfo = new HashMap<>();
-          registerInfo.put("token", token);
-          registerInfo.put("client", clientInfo);
+          JsonRequestBody registerInfo = new JsonRequestBody() {
+            @Override
+            protected void write(JsonGenerator gen) throws IOException {
+              gen.writeStartObject();
+              gen.writeStringField("token", token);
+              gen.writeObjectFieldStart("client");
+              gen.writeStringField("name", clientName);
+              gen.writeObjectFieldStart("public_key");
+              gen.writeStringField("curve25519", publicKey);
+              gen.writeEndObject();
+              gen.writeEndObject();
+              gen.writeEndObject();
+            }
+          };
 
-          final retrofit2.Response<ResponseBody> response = registerClient.register(RequestBody.create(APPLICATION_JSON, mapper.writeValueAsString(registerInfo))).execute();
+          final retrofit2.Response<ResponseBody> response = registerClient.register(registerInfo).execute();
           if (response.code() != 201) {
             executeError(uiExecutor, handleResult, E3DBException.find(response.code(), response.message()));
           } else {
-            final String doc = response.body().string();
-            JsonNode creds = mapper.readTree(doc);
+            JsonNode creds = mapper.readTree(response.body().byteStream());
             final String apiKey = creds.get("api_key_id").asText();
             final String apiSecret = creds.get("api_secret").asText();
             final UUID clientId = UUID.fromString(creds.get("client_id").asText());
@@ -782,44 +1439,182 @@ public class Client {
     if(plain != null && plain.size() > 0)
       checkMap(plain, "plain");
 
-    onBackground(new Runnable() {
+    onBackground(handleResult, new Step<Op<Record>>() {
       @Override
-      public void run() {
-        try {
-          if (fields == null) {
-            uiError(handleResult, new IllegalArgumentException("data null"));
+      public void resume(final Op<Record> op) throws Throwable {
+        getOwnAccessKey(op, type, new Step<byte[]>() {
+          @Override
+          public void resume(final byte[] ownAK) throws Throwable {
+            writeRecord(op, ownAK, type, fields, plain, new Step<JsonNode>() {
+              @Override
+              public void resume(JsonNode result) throws Throwable {
+                op.value(makeR(ownAK, result.get("meta"), result.get("data"), crypto));
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Encrypts and writes one record, continuing with the response body.
+   */
+  private void writeRecord(final Op<?> op, byte[] ak, String type, RecordData fields, Map<String, String> plain, final Step<JsonNode> next) throws IOException {
+    op.call(storageClient.writeRecord(json(recordBody(ak, type, fields.getCleartext(), plain))), new Step<retrofit2.Response<ResponseBody>>() {
+      @Override
+      public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+        if (response.code() == 201) {
+          next.resume(mapper.readTree(response.body().byteStream()));
+        } else {
+          op.error(E3DBException.find(response.code(), response.message()));
+        }
+      }
+    });
+  }
+
+  /**
+   * Write a number of records of the same type.
+   *
+   * <p>The access key for {@code type} is fetched once. Records are then encrypted on the client's background threads
+   * and written with up to {@link ClientBuilder#setWriteWindow(int)} writes in flight at a time. Records are read from
+   * {@code records} as the window allows, so the iterable can be larger than memory (though results are kept for
+   * every record).
+   *
+   * <p>All writes count as one operation towards the client's limits (see {@link AdmissionPolicy}). In the default
+   * mode, each write in flight occupies a background thread; use {@link ClientBuilder#setNonBlocking(boolean)} or
+   * {@link ClientBuilder#setVirtualThreads(boolean)} to make use of large windows.
+   *
+   * @param type Describes the type of the records (e.g., "contact_info", "credit_card", etc.).
+   * @param records Values to encrypt and store, one element per record.
+   * @param plain Additional, user-defined metadata that will <b>NOT</b> be encrypted, applied to every record. Can be null.
+   * @param handleResult If the access key could be obtained, returns one result per record, in the same order as
+   *                     {@code records}. Each result holds the written record, or the error that prevented it from
+   *                     being written. Otherwise, returns the error that occurred.
+   */
+  public void writeAll(final String type, final Iterable<RecordData> records, final Map<String, String> plain, final ResultHandler<List<Result<Record>>> handleResult) {
+    checkNotEmpty(type, "type");
+    checkNotNull(records, "records");
+    if(plain != null && plain.size() > 0)
+      checkMap(plain, "plain");
+
+    onBackground(handleResult, new Step<Op<List<Result<Record>>>>() {
+      @Override
+      public void resume(final Op<List<Result<Record>>> op) throws Throwable {
+        getOwnAccessKey(op, type, new Step<byte[]>() {
+          @Override
+          public void resume(byte[] ownAK) throws Throwable {
+            new BulkWrite(op, ownAK, type, records.iterator(), plain).fill();
           }
-          if (type == null || type.trim().length() == 0) {
-            uiError(handleResult, new IllegalArgumentException("type null"));
+        });
+      }
+    });
+  }
+
+  /**
+   * Keeps up to {@code writeWindow} writes of a {@link #writeAll} call in flight.
+   */
+  private class BulkWrite {
+    private final Op<List<Result<Record>>> op;
+    private final byte[] ak;
+    private final String type;
+    private final Iterator<RecordData> records;
+    private final Map<String, String> plain;
+
+    private final ArrayList<Result<Record>> results = new ArrayList<>();
+    private int inFlight = 0;
+    private boolean exhausted = false;
+    private Throwable failure = null;
+
+    private BulkWrite(Op<List<Result<Record>>> op, byte[] ak, String type, Iterator<RecordData> records, Map<String, String> plain) {
+      this.op = op;
+      this.ak = ak;
+      this.type = type;
+      this.records = records;
+      this.plain = plain;
+    }
+
+    /**
+     * Start writes until the window is full, or finish if no more remain.
+     */
+    private void fill() {
+      List<Runnable> writes = new ArrayList<>();
+      boolean finished;
+      synchronized (this) {
+        while (!exhausted && inFlight < writeWindow) {
+          RecordData fields;
+          try {
+            if (!records.hasNext()) {
+              exhausted = true;
+              break;
+            }
+            fields = records.next();
+          } catch (Throwable e) {
+            exhausted = true;
+            failure = e;
+            break;
           }
-          final byte[] ownAK = getOwnAccessKey(type);
-          Map<String, String> encFields = encryptObject(ownAK, fields.getCleartext(), crypto);
-
-          Map<String, Object> meta = new HashMap<>();
-          meta.put("writer_id", clientId.toString());
-          meta.put("user_id", clientId.toString());
-          meta.put("type", type.trim());
-
-          if (plain != null)
-            meta.put("plain", plain);
-
-          Map<String, Object> record = new HashMap<>();
-          record.put("meta", meta);
-          record.put("data", encFields);
-
-          String content = mapper.writeValueAsString(record);
-          final retrofit2.Response<ResponseBody> response = storageClient.writeRecord(RequestBody.create(APPLICATION_JSON, content)).execute();
-          if (response.code() == 201) {
-            JsonNode result = mapper.readTree(response.body().string());
-            uiValue(handleResult, makeR(ownAK, result.get("meta"), result.get("data"), crypto));
-          } else {
-            uiError(handleResult, E3DBException.find(response.code(), response.message()));
+
+          if (fields == null) {
+            results.add(new ErrorResult<Record>(new IllegalArgumentException("records[" + results.size() + "]: null")));
+            continue;
           }
-        } catch (final Throwable e) {
-          uiError(handleResult, e);
+
+          inFlight++;
+          results.add(null);
+          writes.add(write(results.size() - 1, fields));
         }
+        finished = exhausted && inFlight == 0;
       }
-    });
+
+      if (finished) {
+        if (failure != null)
+          op.error(failure);
+        else
+          op.value(results);
+        return;
+      }
+
+      for (Runnable write : writes) {
+        try {
+          admission.resume(write);
+        } catch (RejectedExecutionException e) {
+          write.run();
+        }
+      }
+    }
+
+    private Runnable write(final int idx, final RecordData fields) {
+      return new Runnable() {
+        @Override
+        public void run() {
+          // Each record gets its own result, so failures don't end the whole call.
+          final Op<Record> recordOp = new Op<>(new ResultFuture.Completer<Record>() {
+            @Override
+            public void handle(Result<Record> r) {
+              synchronized (BulkWrite.this) {
+                results.set(idx, r);
+                inFlight--;
+              }
+              fill();
+            }
+          }, NOTHING);
+
+          recordOp.resume(new Step<Void>() {
+            @Override
+            public void resume(Void ignored) throws Throwable {
+              writeRecord(recordOp, ak, type, fields, plain, new Step<JsonNode>() {
+                @Override
+                public void resume(JsonNode result) throws Throwable {
+                  // Data was just encrypted from cleartext at hand; no need to decrypt the response.
+                  recordOp.value(new R(new HashMap<>(fields.getCleartext()), getRecordMeta(result.get("meta"))));
+                }
+              });
+            }
+          }, null);
+        }
+      };
+    }
   }
 
   /**
@@ -851,38 +1646,29 @@ public class Client {
     if(plain != null && plain.size() > 0)
       checkMap(plain, "plain");
 
-    onBackground(new Runnable() {
+    onBackground(handleResult, new Step<Op<Record>>() {
       @Override
-      public void run() {
-        try {
-          final byte[] ownAK = getOwnAccessKey(recordMeta.type());
-          Map<String, String> encFields = encryptObject(ownAK, fields.getCleartext(), crypto);
-
-          Map<String, Object> meta = new HashMap<>();
-          meta.put("writer_id", clientId.toString());
-          meta.put("user_id", clientId.toString());
-          meta.put("type", recordMeta.type().trim());
-
-          if (plain != null)
-            meta.put("plain", plain);
-
-          Map<String, Object> fields = new HashMap<>();
-          fields.put("meta", meta);
-          fields.put("data", encFields);
-
-          retrofit2.Response<ResponseBody> response = storageClient.updateRecord(recordMeta.recordId().toString(), recordMeta.version(), RequestBody.create(APPLICATION_JSON, mapper.writeValueAsString(fields))).execute();
-          if (response.code() == 409) {
-            uiError(handleResult, new E3DBVersionException(recordMeta.recordId(), recordMeta.version()));
-          } else if (response.code() == 200) {
-            JsonNode result = mapper.readTree(response.body().string());
-            uiValue(handleResult, makeR(ownAK, result.get("meta"), result.get("data"), crypto));
-          }
-          else {
-            uiError(handleResult, E3DBException.find(response.code(), response.message()));
+      public void resume(final Op<Record> op) throws Throwable {
+        getOwnAccessKey(op, recordMeta.type(), new Step<byte[]>() {
+          @Override
+          public void resume(final byte[] ownAK) throws Throwable {
+            RequestBody body = json(recordBody(ownAK, recordMeta.type(), fields.getCleartext(), plain));
+            op.call(storageClient.updateRecord(recordMeta.recordId().toString(), recordMeta.version(), body), new Step<retrofit2.Response<ResponseBody>>() {
+              @Override
+              public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+                if (response.code() == 409) {
+                  op.error(new E3DBVersionException(recordMeta.recordId(), recordMeta.version()));
+                } else if (response.code() == 200) {
+                  JsonNode result = mapper.readTree(response.body().byteStream());
+                  op.value(makeR(ownAK, result.get("meta"), result.get("data"), crypto));
+                }
+                else {
+                  op.error(E3DBException.find(response.code(), response.message()));
+                }
+              }
+            });
           }
-        } catch (Throwable e) {
-          uiError(handleResult, e);
-        }
+        });
       }
     });
   }
@@ -899,22 +1685,22 @@ public class Client {
     checkNotNull(recordId, "recordId");
     checkNotEmpty(version, "version");
 
-    onBackground(new Runnable() {
+    onBackground(handleResult, new Step<Op<Void>>() {
       @Override
-      public void run() {
-        try {
-          retrofit2.Response<ResponseBody> response = storageClient.deleteRecord(recordId.toString(), version.toString()).execute();
-          if (response.code() == 409) {
-            uiError(handleResult, new E3DBVersionException(recordId, version));
-          } else if(response.code() == 204) {
-            uiValue(handleResult, null);
-          }
-          else {
-            uiError(handleResult, E3DBException.find(response.code(), response.message()));
+      public void resume(final Op<Void> op) throws Throwable {
+        op.call(storageClient.deleteRecord(recordId.toString(), version.toString()), new Step<retrofit2.Response<ResponseBody>>() {
+          @Override
+          public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+            if (response.code() == 409) {
+              op.error(new E3DBVersionException(recordId, version));
+            } else if(response.code() == 204) {
+              op.value(null);
+            }
+            else {
+              op.error(E3DBException.find(response.code(), response.message()));
+            }
           }
-        } catch (Throwable e) {
-          uiError(handleResult, e);
-        }
+        });
       }
     });
   }
@@ -928,34 +1714,193 @@ public class Client {
    */
   public void read(final UUID recordId, final ResultHandler<Record> handleResult) {
     checkNotNull(recordId, "recordId");
-    onBackground(new Runnable() {
+    onBackground(handleResult, new Step<Op<Record>>() {
       @Override
-      public void run() {
-        try {
-          final retrofit2.Response<ResponseBody> response = storageClient.getRecord(recordId.toString()).execute();
-          if (response.code() != 200) {
-            if (response.code() == 404)
-              uiError(handleResult, new E3DBNotFoundException(recordId));
-            else
-              uiError(handleResult, E3DBException.find(response.code(), response.message()));
-            return;
+      public void resume(final Op<Record> op) throws Throwable {
+        op.call(storageClient.getRecord(recordId.toString()), new Step<retrofit2.Response<ResponseBody>>() {
+          @Override
+          public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+            if (response.code() != 200) {
+              if (response.code() == 404)
+                op.error(new E3DBNotFoundException(recordId));
+              else
+                op.error(E3DBException.find(response.code(), response.message()));
+              return;
+            }
+
+            final JsonNode result = mapper.readTree(response.body().byteStream());
+            final JsonNode meta = result.get("meta");
+            getAccessKey(op, UUID.fromString(meta.get("writer_id").asText()),
+              UUID.fromString(meta.get("user_id").asText()),
+              clientId, meta.get("type").asText(), new Step<byte[]>() {
+                @Override
+                public void resume(byte[] key) throws Throwable {
+                  op.value(makeR(key, meta, result.get("data"), crypto));
+                }
+              });
           }
+        });
+      }
+    });
+  }
 
-          final JsonNode result = mapper.readTree(response.body().string());
-          final JsonNode meta = result.get("meta");
-          final byte[] key = getAccessKey(UUID.fromString(meta.get("writer_id").asText()),
-            UUID.fromString(meta.get("user_id").asText()),
-            clientId, meta.get("type").asText());
-          try {
-            uiValue(handleResult, makeR(key, meta, result.get("data"), crypto));
-          } catch (ParseException e) {
-            uiError(handleResult, e);
-          } catch (UnsupportedEncodingException e) {
-            uiError(handleResult, e);
+  /**
+   * Read a number of records at once.
+   *
+   * <p>Records are fetched {@value #READ_BATCH} at a time, with all requests made at once. Each distinct access key
+   * needed (one per writer and record type) is then obtained just once, and records are decrypted in parallel on the
+   * client's background threads.
+   *
+   * @param recordIds IDs of the records to read. Duplicates are ignored.
+   * @param handleResult If successful, returns a result for each distinct ID in {@code recordIds}, in the order given.
+   *                     Each result holds the record read, or the error that prevented it from being read (records
+   *                     that do not exist, or that this client cannot read, result in an {@link E3DBNotFoundException}).
+   */
+  public void readMany(final Collection<UUID> recordIds, final ResultHandler<Map<UUID, Result<Record>>> handleResult) {
+    checkNotNull(recordIds, "recordIds");
+    final List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(recordIds));
+    for (UUID id : ids)
+      checkNotNull(id, "recordIds[]");
+
+    onBackground(handleResult, new Step<Op<Map<UUID, Result<Record>>>>() {
+      @Override
+      public void resume(final Op<Map<UUID, Result<Record>>> op) throws Throwable {
+        final Map<UUID, JsonNode> fetched = new HashMap<>();
+        final Map<UUID, Result<Record>> results = new HashMap<>();
+        final int batches = (ids.size() + READ_BATCH - 1) / READ_BATCH;
+
+        fanOut(op, batches, new Branch() {
+          @Override
+          public void run(int i, final Op<Void> batch) {
+            StringBuilder path = new StringBuilder();
+            for (UUID id : batch(i)) {
+              if (path.length() > 0)
+                path.append(',');
+              path.append(id);
+            }
+
+            batch.call(storageClient.getRecord(path.toString()), new Step<retrofit2.Response<ResponseBody>>() {
+              @Override
+              public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+                if (response.code() == 200) {
+                  // A single ID returns an object; several return an array.
+                  JsonNode body = mapper.readTree(response.body().byteStream());
+                  synchronized (fetched) {
+                    if (body.isArray()) {
+                      for (JsonNode record : body)
+                        fetched.put(UUID.fromString(record.get("meta").get("record_id").asText()), record);
+                    } else {
+                      fetched.put(UUID.fromString(body.get("meta").get("record_id").asText()), body);
+                    }
+                  }
+                  batch.value(null);
+                } else if (response.code() == 404) {
+                  batch.value(null);
+                } else {
+                  batch.error(E3DBException.find(response.code(), response.message()));
+                }
+              }
+            });
           }
-        } catch (final Throwable e) {
-          uiError(handleResult, e);
-        }
+
+          @Override
+          public void failed(int i, Throwable e) {
+            synchronized (results) {
+              for (UUID id : batch(i))
+                results.put(id, new ErrorResult<Record>(e));
+            }
+          }
+
+          private List<UUID> batch(int i) {
+            return ids.subList(i * READ_BATCH, Math.min(ids.size(), (i + 1) * READ_BATCH));
+          }
+        }, new Step<Void>() {
+          @Override
+          public void resume(Void ignored) throws Throwable {
+            // Group records by the access key that decrypts them.
+            final Map<String, List<UUID>> byKey = new HashMap<>();
+            for (Map.Entry<UUID, JsonNode> entry : fetched.entrySet()) {
+              JsonNode meta = entry.getValue().get("meta");
+              String key = meta.get("writer_id").asText() + " " + meta.get("user_id").asText() + " " + meta.get("type").asText();
+              List<UUID> group = byKey.get(key);
+              if (group == null) {
+                group = new ArrayList<>();
+                byKey.put(key, group);
+              }
+              group.add(entry.getKey());
+            }
+
+            final List<String> keys = new ArrayList<>(byKey.keySet());
+            final Map<String, byte[]> accessKeys = new HashMap<>();
+            fanOut(op, keys.size(), new Branch() {
+              @Override
+              public void run(final int i, final Op<Void> lookup) throws Throwable {
+                JsonNode meta = fetched.get(byKey.get(keys.get(i)).get(0)).get("meta");
+                getAccessKey(lookup, UUID.fromString(meta.get("writer_id").asText()),
+                  UUID.fromString(meta.get("user_id").asText()),
+                  clientId, meta.get("type").asText(), new Step<byte[]>() {
+                    @Override
+                    public void resume(byte[] ak) throws Throwable {
+                      if (ak == null) {
+                        lookup.error(new E3DBForbiddenException("No access key for records of this type."));
+                        return;
+                      }
+                      synchronized (accessKeys) {
+                        accessKeys.put(keys.get(i), ak);
+                      }
+                      lookup.value(null);
+                    }
+                  });
+              }
+
+              @Override
+              public void failed(int i, Throwable e) {
+                synchronized (results) {
+                  for (UUID id : byKey.get(keys.get(i)))
+                    results.put(id, new ErrorResult<Record>(e));
+                }
+              }
+            }, new Step<Void>() {
+              @Override
+              public void resume(Void ignored) throws Throwable {
+                final List<UUID> toDecrypt = new ArrayList<>();
+                final List<byte[]> toDecryptKeys = new ArrayList<>();
+                for (String key : keys) {
+                  byte[] ak = accessKeys.get(key);
+                  if (ak != null) {
+                    for (UUID id : byKey.get(key)) {
+                      toDecrypt.add(id);
+                      toDecryptKeys.add(ak);
+                    }
+                  }
+                }
+
+                // Filled in place (never resized), one slot per record.
+                final List<Result<Record>> decrypted = new ArrayList<>(Collections.nCopies(toDecrypt.size(), (Result<Record>) null));
+                Parallel.forEach(continuations, decryptParallelism, toDecrypt.size(), new Parallel.Body() {
+                  @Override
+                  public void run(int i) {
+                    JsonNode record = fetched.get(toDecrypt.get(i));
+                    try {
+                      decrypted.set(i, new ValueResult<Record>(makeR(toDecryptKeys.get(i), record.get("meta"), record.get("data"), crypto)));
+                    } catch (Throwable e) {
+                      decrypted.set(i, new ErrorResult<Record>(e));
+                    }
+                  }
+                });
+                for (int i = 0; i < decrypted.size(); i++)
+                  results.put(toDecrypt.get(i), decrypted.get(i));
+
+                Map<UUID, Result<Record>> ordered = new LinkedHashMap<>();
+                for (UUID id : ids) {
+                  Result<Record> result = results.get(id);
+                  ordered.put(id, result != null ? result : new ErrorResult<Record>(new E3DBNotFoundException(id)));
+                }
+                op.value(ordered);
+              }
+            });
+          }
+        });
       }
     });
   }
@@ -972,18 +1917,51 @@ public class Client {
    */
   public void query(final QueryParams params, final ResultHandler<QueryResponse> handleResult) {
     checkNotNull(params, "params");
+    queryPage(params, Admission.PRIORITY_NORMAL, handleResult);
+  }
 
-    onBackground(new Runnable() {
+  /**
+   * Iterate over every record matching the given query, fetching further pages as needed.
+   *
+   * <p>Equivalent to {@code queryAll(params, 2)}.
+   *
+   * @param params The criteria to filter records by. {@link QueryParams#count} sets the page size;
+   *               iteration starts after {@link QueryParams#after}.
+   */
+  public QueryIterator queryAll(QueryParams params) {
+    return queryAll(params, 2);
+  }
+
+  /**
+   * Iterate over every record matching the given query, fetching further pages as needed.
+   *
+   * <p>Up to {@code prefetch} pages are fetched ahead of the page being read, so the next page is usually
+   * ready by the time it is needed. Pages fetched ahead have low priority; they wait behind (and, under
+   * {@link AdmissionPolicy#SHED}, are dropped before) other operations. The first request is made
+   * immediately; see {@link QueryIterator} for how errors are reported.
+   *
+   * @param params The criteria to filter records by. {@link QueryParams#count} sets the page size;
+   *               iteration starts after {@link QueryParams#after}.
+   * @param prefetch Maximum number of pages to hold ahead of the page being read. Must be greater than zero.
+   */
+  public QueryIterator queryAll(QueryParams params, int prefetch) {
+    checkNotNull(params, "params");
+    if (prefetch <= 0)
+      throw new IllegalArgumentException("prefetch: must be greater than zero.");
+
+    return new QueryIterator(this, params, prefetch);
+  }
+
+  void queryPage(final QueryParams params, int priority, ResultHandler<QueryResponse> handleResult) {
+    onBackground(priority, handleResult, new Step<Op<QueryResponse>>() {
       @Override
-      public void run() {
-        try {
-          final QueryResponse queryResponse = doSearchRequest(params);
-          uiValue(handleResult, queryResponse);
-        } catch (final E3DBException e) {
-          uiError(handleResult, e);
-        } catch (final Throwable e) {
-          uiError(handleResult, e);
-        }
+      public void resume(final Op<QueryResponse> op) throws Throwable {
+        doSearchRequest(op, params, new Step<QueryResponse>() {
+          @Override
+          public void resume(QueryResponse queryResponse) throws Throwable {
+            op.value(queryResponse);
+          }
+        });
       }
     });
   }
@@ -1003,40 +1981,60 @@ public class Client {
     checkNotEmpty(type, "type");
     checkNotNull(readerId, "readerId");
 
-    onBackground(new Runnable() {
-      public void run() {
-        try {
-          if(getAccessKey(clientId, clientId, readerId, type) == null) {
-            final retrofit2.Response<ResponseBody> clientInfo = shareClient.lookupClient(readerId).execute();
-            if (clientInfo.code() == 404) {
-              uiError(handleResult, new E3DBClientNotFoundException(readerId.toString()));
-              return;
-            } else if (clientInfo.code() != 200) {
-              uiError(handleResult, E3DBException.find(clientInfo.code(), clientInfo.message()));
+    onBackground(handleResult, new Step<Op<Void>>() {
+      @Override
+      public void resume(final Op<Void> op) throws Throwable {
+        final Step<Void> putPolicy = new Step<Void>() {
+          @Override
+          public void resume(Void ignored) throws Throwable {
+            op.call(shareClient.putPolicy(
+              clientId.toString(),
+              clientId.toString(),
+              readerId.toString(),
+              type,
+              RequestBody.create(APPLICATION_JSON, allow)), new Step<retrofit2.Response<ResponseBody>>() {
+              @Override
+              public void resume(retrofit2.Response<ResponseBody> shareResponse) throws Throwable {
+                if(shareResponse.code() != 201)
+                  op.error(E3DBException.find(shareResponse.code(), shareResponse.message()));
+                else
+                  op.value(null);
+              }
+            });
+          }
+        };
+
+        getAccessKey(op, clientId, clientId, readerId, type, new Step<byte[]>() {
+          @Override
+          public void resume(byte[] readerAk) throws Throwable {
+            if (readerAk != null) {
+              putPolicy.resume(null);
               return;
             }
 
-            byte[] ak = getOwnAccessKey(type);
-            JsonNode info = mapper.readTree(clientInfo.body().string());
-            byte[] readerKey = decodeURL(info.get("public_key").get("curve25519").asText());
-            setAccessKey(Client.this.clientId, Client.this.clientId, readerId, type, readerKey, ak);
-          }
+            op.call(shareClient.lookupClient(readerId), new Step<retrofit2.Response<ResponseBody>>() {
+              @Override
+              public void resume(retrofit2.Response<ResponseBody> clientInfo) throws Throwable {
+                if (clientInfo.code() == 404) {
+                  op.error(new E3DBClientNotFoundException(readerId.toString()));
+                  return;
+                } else if (clientInfo.code() != 200) {
+                  op.error(E3DBException.find(clientInfo.code(), clientInfo.message()));
+                  return;
+                }
 
-          retrofit2.Response<ResponseBody> shareResponse = shareClient.putPolicy(
-            clientId.toString(),
-            clientId.toString(),
-            readerId.toString(),
-            type,
-            RequestBody.create(APPLICATION_JSON, allow)).execute();
-
-          if(shareResponse.code() != 201)
-            uiError(handleResult, E3DBException.find(shareResponse.code(), shareResponse.message()));
-          else
-            uiValue(handleResult, null);
-        }
-        catch(Throwable e) {
-          uiError(handleResult, e);
-        }
+                JsonNode info = mapper.readTree(clientInfo.body().byteStream());
+                final byte[] readerKey = decodeURL(info.get("public_key").get("curve25519").asText());
+                getOwnAccessKey(op, type, new Step<byte[]>() {
+                  @Override
+                  public void resume(byte[] ak) throws Throwable {
+                    setAccessKey(op, clientId, clientId, readerId, type, readerKey, ak, putPolicy);
+                  }
+                });
+              }
+            });
+          }
+        });
       }
     });
   }
@@ -1056,24 +2054,28 @@ public class Client {
     checkNotEmpty(type, "type");
     checkNotNull(readerId, "readerId");
 
-    onBackground(new Runnable() {
-      public void run() {
-        try {
-          removeAccessKey(clientId, clientId, readerId, type);
-          retrofit2.Response<ResponseBody> shareResponse = shareClient.putPolicy(
-            clientId.toString(),
-            clientId.toString(),
-            readerId.toString(),
-            type,
-            RequestBody.create(APPLICATION_JSON, deny)).execute();
-
-          if(shareResponse.code() != 201)
-            uiError(handleResult, E3DBException.find(shareResponse.code(), shareResponse.message()));
-          else
-            uiValue(handleResult, null);
-        } catch (Throwable e) {
-          uiError(handleResult, e);
-        }
+    onBackground(handleResult, new Step<Op<Void>>() {
+      @Override
+      public void resume(final Op<Void> op) throws Throwable {
+        removeAccessKey(op, clientId, clientId, readerId, type, new Step<Void>() {
+          @Override
+          public void resume(Void ignored) throws Throwable {
+            op.call(shareClient.putPolicy(
+              clientId.toString(),
+              clientId.toString(),
+              readerId.toString(),
+              type,
+              RequestBody.create(APPLICATION_JSON, deny)), new Step<retrofit2.Response<ResponseBody>>() {
+              @Override
+              public void resume(retrofit2.Response<ResponseBody> shareResponse) throws Throwable {
+                if(shareResponse.code() != 201)
+                  op.error(E3DBException.find(shareResponse.code(), shareResponse.message()));
+                else
+                  op.value(null);
+              }
+            });
+          }
+        });
       }
     });
   }
@@ -1086,31 +2088,31 @@ public class Client {
    * @param handleResult If successful, returns a list of records types shared with this client. The resulting list may be empty but never null.
    */
   public void getIncomingSharing(final ResultHandler<List<IncomingSharingPolicy>> handleResult) {
-    onBackground(new Runnable() {
+    onBackground(handleResult, new Step<Op<List<IncomingSharingPolicy>>>() {
       @Override
-      public void run() {
-        try {
-          retrofit2.Response<ResponseBody> response = shareClient.getIncoming().execute();
-          if(response.code() != 200) {
-            uiError(handleResult, E3DBException.find(response.code(), response.message()));
-            return;
-          }
+      public void resume(final Op<List<IncomingSharingPolicy>> op) throws Throwable {
+        op.call(shareClient.getIncoming(), new Step<retrofit2.Response<ResponseBody>>() {
+          @Override
+          public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+            if(response.code() != 200) {
+              op.error(E3DBException.find(response.code(), response.message()));
+              return;
+            }
 
-          JsonNode results = mapper.readTree(response.body().string());
-          ArrayList<IncomingSharingPolicy> policies = new ArrayList<>(results.size());
-          if(results.isArray()) {
-            for(JsonNode policy : results) {
-              String writer_name = policy.get("writer_name") == null ? "" : policy.get("writer_name").asText();
-              String writer_id = policy.get("writer_id").asText();
-              String record_type = policy.get("record_type").asText();
-              policies.add(new IncomingSharingPolicy(UUID.fromString(writer_id), writer_name, record_type));
+            JsonNode results = mapper.readTree(response.body().byteStream());
+            ArrayList<IncomingSharingPolicy> policies = new ArrayList<>(results.size());
+            if(results.isArray()) {
+              for(JsonNode policy : results) {
+                String writer_name = policy.get("writer_name") == null ? "" : policy.get("writer_name").asText();
+                String writer_id = policy.get("writer_id").asText();
+                String record_type = policy.get("record_type").asText();
+                policies.add(new IncomingSharingPolicy(UUID.fromString(writer_id), writer_name, record_type));
+              }
             }
-          }
 
-          uiValue(handleResult, policies);
-        } catch (Throwable e) {
-          uiError(handleResult, e);
-        }
+            op.value(policies);
+          }
+        });
       }
     });
   }
@@ -1123,32 +2125,154 @@ public class Client {
    * @param handleResult If successful, returns a list of record types that this client has shared. The resulting list may be empty but will never be null.
    */
   public void getOutgoingSharing(final ResultHandler<List<OutgoingSharingPolicy>> handleResult) {
-    onBackground(new Runnable() {
+    onBackground(handleResult, new Step<Op<List<OutgoingSharingPolicy>>>() {
       @Override
-      public void run() {
-        try {
-          retrofit2.Response<ResponseBody> response = shareClient.getOutgoing().execute();
-          if(response.code() != 200) {
-            uiError(handleResult, E3DBException.find(response.code(), response.message()));
-            return;
-          }
+      public void resume(final Op<List<OutgoingSharingPolicy>> op) throws Throwable {
+        op.call(shareClient.getOutgoing(), new Step<retrofit2.Response<ResponseBody>>() {
+          @Override
+          public void resume(retrofit2.Response<ResponseBody> response) throws Throwable {
+            if(response.code() != 200) {
+              op.error(E3DBException.find(response.code(), response.message()));
+              return;
+            }
 
-          JsonNode results = mapper.readTree(response.body().string());
-          ArrayList<OutgoingSharingPolicy> policies = new ArrayList<>(results.size());
-          if(results.isArray()) {
-            for(JsonNode policy : results) {
-              String reader_name = policy.get("reader_name") == null ? "" : policy.get("reader_name").asText();
-              String reader_id = policy.get("reader_id").asText();
-              String record_type = policy.get("record_type").asText();
-              policies.add(new OutgoingSharingPolicy(UUID.fromString(reader_id), reader_name, record_type));
+            JsonNode results = mapper.readTree(response.body().byteStream());
+            ArrayList<OutgoingSharingPolicy> policies = new ArrayList<>(results.size());
+            if(results.isArray()) {
+              for(JsonNode policy : results) {
+                String reader_name = policy.get("reader_name") == null ? "" : policy.get("reader_name").asText();
+                String reader_id = policy.get("reader_id").asText();
+                String record_type = policy.get("record_type").asText();
+                policies.add(new OutgoingSharingPolicy(UUID.fromString(reader_id), reader_name, record_type));
+              }
             }
-          }
 
-          uiValue(handleResult, policies);
-        } catch (Throwable e) {
-          uiError(handleResult, e);
-        }
+            op.value(policies);
+          }
+        });
       }
     });
   }
+
+  /**
+   * Write a new record, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #write(String, RecordData, Map, ResultHandler)}. The future completes on
+   * the background thread that performed the write.
+   */
+  public ResultFuture<Record> writeAsync(String type, RecordData fields, Map<String, String> plain) {
+    ResultFuture<Record> future = new ResultFuture<>();
+    write(type, fields, plain, future.completer());
+    return future;
+  }
+
+  /**
+   * Write a number of records, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #writeAll(String, Iterable, Map, ResultHandler)}.
+   */
+  public ResultFuture<List<Result<Record>>> writeAllAsync(String type, Iterable<RecordData> records, Map<String, String> plain) {
+    ResultFuture<List<Result<Record>>> future = new ResultFuture<>();
+    writeAll(type, records, plain, future.completer());
+    return future;
+  }
+
+  /**
+   * Replace the given record, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #update(RecordMeta, RecordData, Map, ResultHandler)}.
+   */
+  public ResultFuture<Record> updateAsync(RecordMeta recordMeta, RecordData fields, Map<String, String> plain) {
+    ResultFuture<Record> future = new ResultFuture<>();
+    update(recordMeta, fields, plain, future.completer());
+    return future;
+  }
+
+  /**
+   * Deletes a given record, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #delete(UUID, String, ResultHandler)}.
+   */
+  public ResultFuture<Void> deleteAsync(UUID recordId, String version) {
+    ResultFuture<Void> future = new ResultFuture<>();
+    delete(recordId, version, future.completer());
+    return future;
+  }
+
+  /**
+   * Reads a record, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #read(UUID, ResultHandler)}.
+   */
+  public ResultFuture<Record> readAsync(UUID recordId) {
+    ResultFuture<Record> future = new ResultFuture<>();
+    read(recordId, future.completer());
+    return future;
+  }
+
+  /**
+   * Reads a number of records, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #readMany(Collection, ResultHandler)}.
+   */
+  public ResultFuture<Map<UUID, Result<Record>>> readManyAsync(Collection<UUID> recordIds) {
+    ResultFuture<Map<UUID, Result<Record>>> future = new ResultFuture<>();
+    readMany(recordIds, future.completer());
+    return future;
+  }
+
+  /**
+   * Retrieve records matching the given query, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #query(QueryParams, ResultHandler)}.
+   */
+  public ResultFuture<QueryResponse> queryAsync(QueryParams params) {
+    ResultFuture<QueryResponse> future = new ResultFuture<>();
+    query(params, future.completer());
+    return future;
+  }
+
+  /**
+   * Share records of the given type, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #share(String, UUID, ResultHandler)}.
+   */
+  public ResultFuture<Void> shareAsync(String type, UUID readerId) {
+    ResultFuture<Void> future = new ResultFuture<>();
+    share(type, readerId, future.completer());
+    return future;
+  }
+
+  /**
+   * Remove sharing access, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #revoke(String, UUID, ResultHandler)}.
+   */
+  public ResultFuture<Void> revokeAsync(String type, UUID readerId) {
+    ResultFuture<Void> future = new ResultFuture<>();
+    revoke(type, readerId, future.completer());
+    return future;
+  }
+
+  /**
+   * Get a list of record types shared with this client, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #getIncomingSharing(ResultHandler)}.
+   */
+  public ResultFuture<List<IncomingSharingPolicy>> getIncomingSharingAsync() {
+    ResultFuture<List<IncomingSharingPolicy>> future = new ResultFuture<>();
+    getIncomingSharing(future.completer());
+    return future;
+  }
+
+  /**
+   * Get a list of record types shared by this client, returning a future instead of taking a callback.
+   *
+   * <p>See {@link #getOutgoingSharing(ResultHandler)}.
+   */
+  public ResultFuture<List<OutgoingSharingPolicy>> getOutgoingSharingAsync() {
+    ResultFuture<List<OutgoingSharingPolicy>> future = new ResultFuture<>();
+    getOutgoingSharing(future.completer());
+    return future;
+  }
 }
@@ -6,6 +6,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URI;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okio.ByteString;
 
@@ -37,6 +44,23 @@ public class ClientBuilder {
   private UUID clientId;
   private URI host = URI.create("https://api.e3db.com");
   private byte[] privateKey;
+  private long akCacheTtl = 5;
+  private TimeUnit akCacheTtlUnit = TimeUnit.MINUTES;
+  private long akMissingTtl = 30;
+  private TimeUnit akMissingTtlUnit = TimeUnit.SECONDS;
+  private int akCacheSize = 512;
+  private int maxConcurrency = 0;
+  private int queueDepth = 64;
+  private AdmissionPolicy admissionPolicy = AdmissionPolicy.FAIL_FAST;
+  private Executor executor = null;
+  private int dedicatedThreads = 0;
+  private boolean nonBlocking = false;
+  private boolean virtualThreads = false;
+  private int writeWindow = 16;
+  private int decryptParallelism = Runtime.getRuntime().availableProcessors();
+  private boolean proactiveTokenRefresh = false;
+  private Transport transport = HttpTransport.shared();
+  private Crypto crypto = null;
 
   public ClientBuilder() {
   }
@@ -133,6 +157,345 @@ public class ClientBuilder {
     return this;
   }
 
+  /**
+   * Configure how long decrypted access keys are cached by the client.
+   *
+   * <p>Defaults to 5 minutes. Access keys removed through {@link Client#revoke(String, UUID, ResultHandler)} are
+   * dropped from the cache immediately; this value bounds how long a key changed by some other client
+   * can remain in use.
+   *
+   * @param ttl Time to keep each key. Must be greater than or equal to zero; zero disables caching.
+   * @param unit Unit for {@code ttl}.
+   * @return This instance.
+   */
+  public ClientBuilder setAccessKeyCacheTtl(long ttl, TimeUnit unit) {
+    checkNotNull(unit, "unit");
+    if (ttl < 0)
+      throw new IllegalArgumentException("ttl: must be greater than or equal to zero.");
+
+    this.akCacheTtl = ttl;
+    this.akCacheTtlUnit = unit;
+    return this;
+  }
+
+  /**
+   * Configure how long the client remembers that an access key does not exist.
+   *
+   * <p>Defaults to 30 seconds. Avoids repeated lookups when sharing with many readers (or retrying a share) for
+   * whom no key has been written yet. Writing a key for a given reader and type clears that entry immediately.
+   *
+   * @param ttl Time to remember each missing key. Must be greater than or equal to zero; zero disables negative caching.
+   * @param unit Unit for {@code ttl}.
+   * @return This instance.
+   */
+  public ClientBuilder setAccessKeyNegativeCacheTtl(long ttl, TimeUnit unit) {
+    checkNotNull(unit, "unit");
+    if (ttl < 0)
+      throw new IllegalArgumentException("ttl: must be greater than or equal to zero.");
+
+    this.akMissingTtl = ttl;
+    this.akMissingTtlUnit = unit;
+    return this;
+  }
+
+  /**
+   * Configure the maximum number of access keys cached by the client.
+   *
+   * <p>Defaults to 512. The least-recently used key is evicted when the limit is reached. Keys remembered
+   * as missing (see {@link #setAccessKeyNegativeCacheTtl(long, TimeUnit)}) count towards this limit.
+   *
+   * @param maxEntries Maximum number of keys to cache. Must be greater than or equal to zero; zero disables caching.
+   * @return This instance.
+   */
+  public ClientBuilder setAccessKeyCacheSize(int maxEntries) {
+    if (maxEntries < 0)
+      throw new IllegalArgumentException("maxEntries: must be greater than or equal to zero.");
+
+    this.akCacheSize = maxEntries;
+    return this;
+  }
+
+  /**
+   * Configure the maximum number of operations the client runs at once.
+   *
+   * <p>Defaults to the number of available processors; 64 for non-blocking clients
+   * (see {@link #setNonBlocking(boolean)}); or 1024 for clients running on virtual threads (see
+   * {@link #setVirtualThreads(boolean)}).
+   *
+   * @param maxConcurrency Must be greater than zero.
+   * @return This instance.
+   */
+  public ClientBuilder setMaxConcurrency(int maxConcurrency) {
+    if (maxConcurrency <= 0)
+      throw new IllegalArgumentException("maxConcurrency: must be greater than zero.");
+
+    this.maxConcurrency = maxConcurrency;
+    return this;
+  }
+
+  /**
+   * Configure the maximum number of operations waiting to run, once
+   * {@link #setMaxConcurrency(int)} operations are already running.
+   *
+   * <p>Defaults to 64. When the queue is full, new operations are handled
+   * according to {@link #setAdmissionPolicy(AdmissionPolicy)}.
+   *
+   * @param queueDepth Must be greater than or equal to zero.
+   * @return This instance.
+   */
+  public ClientBuilder setQueueDepth(int queueDepth) {
+    if (queueDepth < 0)
+      throw new IllegalArgumentException("queueDepth: must be greater than or equal to zero.");
+
+    this.queueDepth = queueDepth;
+    return this;
+  }
+
+  /**
+   * Configure what happens to new operations when the queue of pending operations
+   * is full.
+   *
+   * <p>Defaults to {@link AdmissionPolicy#FAIL_FAST}.
+   *
+   * <p>Operations started by callers all have the same priority, so {@link AdmissionPolicy#SHED} drops the oldest
+   * waiting operation. Only page prefetches made by {@link Client#queryAll(QueryParams)} run at a lower priority,
+   * and are dropped first.
+   *
+   * @return This instance.
+   */
+  public ClientBuilder setAdmissionPolicy(AdmissionPolicy admissionPolicy) {
+    checkNotNull(admissionPolicy, "admissionPolicy");
+    this.admissionPolicy = admissionPolicy;
+    return this;
+  }
+
+  /**
+   * Configure the executor that runs this client's operations.
+   *
+   * <p>By default, all clients share a single pool of background threads. Give each client its own executor to keep
+   * one client's workload from delaying another's; or give several clients the same {@link FairShareExecutor}, which
+   * shares its threads among them in round-robin order.
+   *
+   * <p>The executor should not reject work; limits on pending operations are applied by the client (see
+   * {@link #setQueueDepth(int)}). Replaces any value given to {@link #setDedicatedThreads(int)} or
+   * {@link #setVirtualThreads(boolean)}.
+   *
+   * @return This instance.
+   */
+  public ClientBuilder setExecutor(Executor executor) {
+    checkNotNull(executor, "executor");
+    this.executor = executor;
+    this.dedicatedThreads = 0;
+    this.virtualThreads = false;
+    return this;
+  }
+
+  /**
+   * Give the client its own pool of background threads, rather than sharing the
+   * default pool with every other client.
+   *
+   * <p>Threads are daemon threads and exit after 30 seconds without work. Replaces any value
+   * given to {@link #setExecutor(Executor)} or {@link #setVirtualThreads(boolean)}.
+   *
+   * @param threads Number of threads. Must be greater than zero.
+   * @return This instance.
+   */
+  public ClientBuilder setDedicatedThreads(int threads) {
+    if (threads <= 0)
+      throw new IllegalArgumentException("threads: must be greater than zero.");
+
+    this.dedicatedThreads = threads;
+    this.executor = null;
+    this.virtualThreads = false;
+    return this;
+  }
+
+  /**
+   * Run each of the client's operations on its own virtual thread.
+   *
+   * <p>Virtual threads require Java 21 or later; use {@link #virtualThreadsSupported()} to check. Where they
+   * are not available, this setting is ignored and the client uses the default pool. Because a virtual thread
+   * waiting on the network does not tie up an OS thread, a client can run thousands of operations at once;
+   * {@link #setMaxConcurrency(int)} defaults to 1024 in this mode. Replaces any value given to
+   * {@link #setExecutor(Executor)} or {@link #setDedicatedThreads(int)}.
+   *
+   * @return This instance.
+   */
+  public ClientBuilder setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+    if (virtualThreads) {
+      this.executor = null;
+      this.dedicatedThreads = 0;
+    }
+    return this;
+  }
+
+  /**
+   * Whether this JVM supports virtual threads (see {@link #setVirtualThreads(boolean)}).
+   */
+  public static boolean virtualThreadsSupported() {
+    return VirtualThreads.executor() != null;
+  }
+
+  /**
+   * Configure how many writes {@link Client#writeAll(String, Iterable, java.util.Map, ResultHandler)} keeps
+   * in flight at once.
+   *
+   * <p>Defaults to 16.
+   *
+   * @param writeWindow Must be greater than zero.
+   * @return This instance.
+   */
+  public ClientBuilder setWriteWindow(int writeWindow) {
+    if (writeWindow <= 0)
+      throw new IllegalArgumentException("writeWindow: must be greater than zero.");
+
+    this.writeWindow = writeWindow;
+    return this;
+  }
+
+  /**
+   * Configure how many threads decrypt the records in a page of query results (or a
+   * {@link Client#readMany(java.util.Collection, ResultHandler)} call) at once.
+   *
+   * <p>Defaults to the number of available processors. The thread running the operation takes part, along with
+   * others from the client's executor; set to 1 to decrypt each page on a single thread.
+   *
+   * @param decryptParallelism Must be greater than zero.
+   * @return This instance.
+   */
+  public ClientBuilder setDecryptParallelism(int decryptParallelism) {
+    if (decryptParallelism <= 0)
+      throw new IllegalArgumentException("decryptParallelism: must be greater than zero.");
+
+    this.decryptParallelism = decryptParallelism;
+    return this;
+  }
+
+  /**
+   * Configure whether operations hold a background thread while waiting for E3DB to respond.
+   *
+   * <p>Defaults to {@code false}. When {@code true}, HTTP calls are made asynchronously, and decryption and parsing
+   * run on the client's executor once each response arrives. The number of operations in flight is then limited by
+   * {@link #setMaxConcurrency(int)} rather than the number of background threads, which can stay at about the number
+   * of processors.
+   *
+   * @return This instance.
+   */
+  public ClientBuilder setNonBlocking(boolean nonBlocking) {
+    this.nonBlocking = nonBlocking;
+    return this;
+  }
+
+  /**
+   * Configure whether access tokens are replaced in the background before they expire.
+   *
+   * <p>Defaults to {@code false}, in which case the first request made after a token expires fetches a new one
+   * (other requests made meanwhile wait for it). When {@code true}, a request made in the last quarter of a token's
+   * life starts fetching the next token in the background, so requests made steadily never wait for a token.
+   *
+   * @return This instance.
+   */
+  public ClientBuilder setProactiveTokenRefresh(boolean proactiveTokenRefresh) {
+    this.proactiveTokenRefresh = proactiveTokenRefresh;
+    return this;
+  }
+
+  /**
+   * Configure how the client's requests are sent.
+   *
+   * <p>Defaults to {@link HttpTransport#shared()}, so that clients pointed at the same host reuse each other's
+   * connections. Non-blocking clients (see {@link #setNonBlocking(boolean)}) are also limited by the transport's
+   * maximum number of requests in flight (see {@link HttpTransportBuilder#setMaxRequestsPerHost(int)}). Use an
+   * {@link InMemoryTransport} to answer requests without a network.
+   *
+   * @param transport Transport to use; see {@link HttpTransportBuilder}.
+   * @return This instance.
+   */
+  public ClientBuilder setTransport(Transport transport) {
+    checkNotNull(transport, "transport");
+    this.transport = transport;
+    return this;
+  }
+
+  /**
+   * Configure the implementation of cryptographic operations used by the client.
+   *
+   * <p>Defaults to {@link CryptoProviders#preferred()}. The implementation is checked against known results and
+   * against the preferred provider before it is accepted.
+   *
+   * @param crypto Implementation to use.
+   * @return This instance.
+   */
+  public ClientBuilder setCrypto(Crypto crypto) {
+    CryptoProviders.check(crypto);
+    this.crypto = crypto;
+    return this;
+  }
+
+  /**
+   * Configure the client to use the crypto provider with the given name, such as {@code "kalium"} or
+   * {@code "java"}. See {@link CryptoProviders#available()}.
+   *
+   * @param name Name of an available provider.
+   * @return This instance.
+   */
+  public ClientBuilder setCryptoProvider(String name) {
+    this.crypto = CryptoProviders.get(name);
+    return this;
+  }
+
+  /**
+   * Configure the client to use whichever available crypto provider is fastest on this platform for
+   * record fields of around {@code payloadSize} bytes.
+   *
+   * <p>The first call for a given size benchmarks each provider briefly; see {@link CryptoProviders#fastest(int)}.
+   *
+   * @param payloadSize Typical size of a record field, in bytes.
+   * @return This instance.
+   */
+  public ClientBuilder setCryptoBenchmark(int payloadSize) {
+    this.crypto = CryptoProviders.fastest(payloadSize);
+    return this;
+  }
+
+  private Executor buildExecutor() {
+    if (virtualThreads && virtualThreadsSupported())
+      return VirtualThreads.executor();
+    else if (executor instanceof FairShareExecutor)
+      return ((FairShareExecutor) executor).newLane();
+    else if (executor != null)
+      return executor;
+    else if (dedicatedThreads > 0) {
+      final String name = "E3DB " + clientId + " ";
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(dedicatedThreads, dedicatedThreads, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger threadCount = new AtomicInteger(1);
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setDaemon(true);
+            thread.setName(name + threadCount.getAndIncrement());
+            return thread;
+          }
+        });
+      pool.allowCoreThreadTimeOut(true);
+      return pool;
+    }
+    else
+      return null;
+  }
+
+  private int defaultMaxConcurrency() {
+    if (virtualThreads && virtualThreadsSupported())
+      return 1024;
+    else if (nonBlocking)
+      return 64;
+    else
+      return Runtime.getRuntime().availableProcessors();
+  }
+
   /**
    * Create an E3DB Client instance based on configured parameters.
    *
@@ -140,6 +503,10 @@ public class ClientBuilder {
    */
   public Client build() {
     checkState();
-    return new Client(apiKey, apiSecret, clientId, host, privateKey);
+    return new Client(apiKey, apiSecret, clientId, host, privateKey,
+      new AccessKeyCache(akCacheTtl, akCacheTtlUnit, akMissingTtl, akMissingTtlUnit, akCacheSize),
+      buildExecutor(),
+      maxConcurrency > 0 ? maxConcurrency : defaultMaxConcurrency(),
+      queueDepth, admissionPolicy, nonBlocking, writeWindow, decryptParallelism, proactiveTokenRefresh, transport, crypto);
   }
 }
@@ -0,0 +1,318 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.crypto.AndroidCrypto;
+import com.tozny.e3db.crypto.KaliumCrypto;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+import static com.tozny.e3db.Checks.*;
+
+/**
+ * Finds and chooses the {@link Crypto} implementations available to E3DB clients.
+ *
+ * <p>Implementations are registered through {@link ServiceLoader} (see {@link CryptoProvider}). Before a provider
+ * is used, it must reproduce known keys and decrypt known ciphertexts, and the boxes it produces must decrypt with
+ * the preferred provider (and the reverse). Providers that fail to load, or that do not interoperate, are left out;
+ * the reason is reported if one is then asked for (or if none is left).
+ * If no provider is registered at all, the platform's libsodium binding ({@code AndroidCrypto} on Android,
+ * {@code KaliumCrypto} elsewhere) is used, as in earlier releases.
+ *
+ * <p>See {@link ClientBuilder#setCryptoProvider(String)} and {@link ClientBuilder#setCryptoBenchmark(int)} to
+ * choose a provider for a client.
+ */
+public final class CryptoProviders {
+  // RFC 7748, section 6.1.
+  private static final byte[] ALICE_PRIVATE = hex("77076d0a7318a57d3c16c17251b26645df4c2f87ebc0992ab177fba51db92c2a");
+  private static final byte[] ALICE_PUBLIC = hex("8520f0098930a754748b7ddcb43ef75a0dbf3a0d26381af4eba4a98eaa9b4e6a");
+  private static final byte[] BOB_PRIVATE = hex("5dab087e624a8a4b79e17f8b83800ee66f3bb1292618b6fd1c2f8b27ff88e0eb");
+  private static final byte[] BOB_PUBLIC = hex("de9edb7d7b7dc1b4d35b61c2ece435373f8343c85b78674dadfc7e146f882b4f");
+
+  // MESSAGE boxed with libsodium, under SECRET_KEY and from Alice to Bob, both with NONCE.
+  private static final byte[] MESSAGE = utf8("e3db provider check");
+  private static final byte[] SECRET_KEY = hex("000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+  private static final byte[] NONCE = hex("202122232425262728292a2b2c2d2e2f3031323334353637");
+  private static final byte[] SECRET_BOX = hex("0b4b69000b9d9cf9e39e409d08c8a3fc946a29c76d5728f97f5c310b7e68d49cdcd1d6");
+  private static final byte[] BOX = hex("64cec22f3adcef42fb03faa29eb72dffe3e9b0a6527a6d3c41e2d907b722d9e5f35d7d");
+
+  private static final long WARMUP_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long MEASURE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+  private static Registry registry;
+  private static final Map<Integer, Crypto> fastest = new HashMap<>();
+
+  private CryptoProviders() {
+  }
+
+  /**
+   * Names of the providers that loaded and interoperate on this platform, most preferred first.
+   */
+  public static List<String> available() {
+    List<String> names = new ArrayList<>();
+    for (Provider provider : providers())
+      names.add(provider.name);
+    return names;
+  }
+
+  /**
+   * The implementation used by clients that do not choose one: the available provider with the highest
+   * {@link CryptoProvider#priority()}.
+   */
+  public static Crypto preferred() {
+    return registry().preferred();
+  }
+
+  /**
+   * The implementation registered under {@code name}.
+   *
+   * @param name Name of a provider (see {@link CryptoProvider#name()}).
+   * @return The provider's implementation; throws {@code IllegalArgumentException} if it is not available (with
+   * the provider's failure as the cause, if it is registered but failed to load).
+   */
+  public static Crypto get(String name) {
+    checkNotEmpty(name, "name");
+    return registry().get(name);
+  }
+
+  /**
+   * The available implementation that encrypts and decrypts fields of the given size fastest on this platform.
+   *
+   * <p>The first call for each size runs a short (a few tens of milliseconds per provider) benchmark of secret-key
+   * encryption and decryption, which dominates the cost of reading and writing records; the result is remembered.
+   *
+   * @param payloadSize Typical size of a record field, in bytes.
+   */
+  public static Crypto fastest(int payloadSize) {
+    if (payloadSize < 0)
+      throw new IllegalArgumentException("payloadSize: must be greater than or equal to zero.");
+    List<Provider> providers = providers();
+    if (providers.size() < 2)
+      return preferred();
+
+    synchronized (fastest) {
+      Crypto best = fastest.get(payloadSize);
+      if (best == null) {
+        long bestOps = -1;
+        byte[] message = new byte[payloadSize];
+        for (Provider provider : providers) {
+          run(provider.crypto, message, WARMUP_NANOS);
+          long ops = run(provider.crypto, message, MEASURE_NANOS);
+          if (ops > bestOps) {
+            bestOps = ops;
+            best = provider.crypto;
+          }
+        }
+        fastest.put(payloadSize, best);
+      }
+      return best;
+    }
+  }
+
+  /**
+   * Checks that {@code crypto} interoperates with the preferred provider, throwing {@code IllegalArgumentException}
+   * if not.
+   */
+  public static void check(Crypto crypto) {
+    checkNotNull(crypto, "crypto");
+    List<Provider> providers = providers();
+    try {
+      verify(crypto, providers.isEmpty() ? null : providers.get(0).crypto);
+    } catch (RuntimeException | LinkageError e) {
+      throw new IllegalArgumentException("crypto: does not interoperate with E3DB: " + e.getMessage(), e);
+    }
+  }
+
+  private static List<Provider> providers() {
+    return registry().providers;
+  }
+
+  private static synchronized Registry registry() {
+    if (registry == null)
+      registry = new Registry(registered());
+    return registry;
+  }
+
+  private static List<CryptoProvider> registered() {
+    List<CryptoProvider> registered = new ArrayList<>();
+    Iterator<CryptoProvider> it = ServiceLoader.load(CryptoProvider.class, CryptoProviders.class.getClassLoader()).iterator();
+    while (true) {
+      try {
+        if (!it.hasNext())
+          break;
+        registered.add(it.next());
+      } catch (ServiceConfigurationError ignored) {
+        // A provider listed but not loadable; skip it.
+      }
+    }
+
+    if (registered.isEmpty())
+      registered.add(platformDefault());
+    return registered;
+  }
+
+  private static CryptoProvider platformDefault() {
+    boolean isAndroid = false;
+    try {
+      Class.forName("android.os.Build");
+      isAndroid = true;
+    } catch (ClassNotFoundException ignored) {
+    }
+
+    final boolean android = isAndroid;
+    return new CryptoProvider() {
+      @Override
+      public String name() {
+        return android ? "android" : "kalium";
+      }
+
+      @Override
+      public int priority() {
+        return 0;
+      }
+
+      @Override
+      public Crypto create() {
+        return android ? new AndroidCrypto() : new KaliumCrypto();
+      }
+    };
+  }
+
+  // Throws unless crypto reproduces the known answers and, if given, interoperates with reference.
+  private static void verify(Crypto crypto, Crypto reference) {
+    expect(Arrays.equals(ALICE_PUBLIC, crypto.getPublicKey(ALICE_PRIVATE)), "public key");
+    expect(Arrays.equals(MESSAGE, crypto.decryptSecretBox(new CipherWithNonce(SECRET_BOX, NONCE), SECRET_KEY)), "secret box");
+    expect(Arrays.equals(MESSAGE, crypto.decryptBox(new CipherWithNonce(BOX, NONCE), ALICE_PUBLIC, BOB_PRIVATE)), "box");
+    expect(Arrays.equals(MESSAGE, crypto.decryptSecretBox(crypto.encryptSecretBox(MESSAGE, SECRET_KEY), SECRET_KEY)), "secret box round trip");
+
+    if (reference != null) {
+      expect(Arrays.equals(MESSAGE, reference.decryptSecretBox(crypto.encryptSecretBox(MESSAGE, SECRET_KEY), SECRET_KEY)),
+        "secret box interop");
+      expect(Arrays.equals(MESSAGE, reference.decryptBox(crypto.encryptBox(MESSAGE, BOB_PUBLIC, ALICE_PRIVATE), ALICE_PUBLIC, BOB_PRIVATE)),
+        "box interop");
+      expect(Arrays.equals(MESSAGE, crypto.decryptBox(reference.encryptBox(MESSAGE, ALICE_PUBLIC, BOB_PRIVATE), BOB_PUBLIC, ALICE_PRIVATE)),
+        "box interop");
+      byte[] privateKey = crypto.newPrivateKey();
+      expect(Arrays.equals(reference.getPublicKey(privateKey), crypto.getPublicKey(privateKey)), "public key interop");
+    }
+  }
+
+  private static void expect(boolean condition, String what) {
+    if (!condition)
+      throw new IllegalStateException("Wrong result: " + what);
+  }
+
+  // Secret-key encryptions and decryptions completed in the given time.
+  private static long run(Crypto crypto, byte[] message, long nanos) {
+    byte[] key = crypto.newSecretKey();
+    long ops = 0;
+    long end = System.nanoTime() + nanos;
+    do {
+      crypto.decryptSecretBox(crypto.encryptSecretBox(message, key), key);
+      ops++;
+    } while (System.nanoTime() - end < 0);
+    return ops;
+  }
+
+  private static byte[] hex(String hex) {
+    return ByteString.decodeHex(hex).toByteArray();
+  }
+
+  private static byte[] utf8(String s) {
+    try {
+      return s.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // The providers that passed verification, and why the others did not.
+  static final class Registry {
+    final List<Provider> providers;
+    final Map<String, Throwable> failures;
+
+    Registry(List<CryptoProvider> registered) {
+      List<Provider> loaded = new ArrayList<>();
+      for (CryptoProvider provider : registered)
+        loaded.add(new Provider(provider));
+      Collections.sort(loaded, new Comparator<Provider>() {
+        @Override
+        public int compare(Provider a, Provider b) {
+          return a.priority > b.priority ? -1 : a.priority < b.priority ? 1 : 0;
+        }
+      });
+
+      List<Provider> usable = new ArrayList<>(loaded.size());
+      Map<String, Throwable> failed = new LinkedHashMap<>();
+      for (Provider provider : loaded) {
+        try {
+          provider.crypto = provider.factory.create();
+          verify(provider.crypto, usable.isEmpty() ? null : usable.get(0).crypto);
+          usable.add(provider);
+        } catch (RuntimeException | LinkageError e) {
+          // Missing native library, unsupported platform, or wrong results; leave it out.
+          provider.crypto = null;
+          failed.put(provider.name, e);
+        }
+      }
+      this.providers = Collections.unmodifiableList(usable);
+      this.failures = Collections.unmodifiableMap(failed);
+    }
+
+    Crypto preferred() {
+      if (!providers.isEmpty())
+        return providers.get(0).crypto;
+
+      StringBuilder message = new StringBuilder("No usable crypto provider.");
+      for (Map.Entry<String, Throwable> failure : failures.entrySet())
+        message.append(" ").append(failure.getKey()).append(": ").append(failure.getValue()).append(".");
+      IllegalStateException e = new IllegalStateException(message.toString());
+      for (Throwable failure : failures.values()) {
+        if (e.getCause() == null)
+          e.initCause(failure);
+        else
+          e.addSuppressed(failure);
+      }
+      throw e;
+    }
+
+    Crypto get(String name) {
+      List<String> available = new ArrayList<>();
+      for (Provider provider : providers) {
+        if (provider.name.equals(name))
+          return provider.crypto;
+        available.add(provider.name);
+      }
+      Throwable failure = failures.get(name);
+      if (failure != null)
+        throw new IllegalArgumentException("Crypto provider not available: " + name + " failed its self-check: " +
+          failure + " (available: " + available + ")", failure);
+      throw new IllegalArgumentException("Crypto provider not available: " + name + " (available: " + available + ")");
+    }
+  }
+
+  private static class Provider {
+    final CryptoProvider factory;
+    final String name;
+    final int priority;
+    Crypto crypto;
+
+    Provider(CryptoProvider factory) {
+      this.factory = factory;
+      this.name = factory.name();
+      this.priority = factory.priority();
+    }
+  }
+}
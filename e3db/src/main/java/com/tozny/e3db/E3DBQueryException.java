@@ -0,0 +1,14 @@
+package com.tozny.e3db;
+
+/**
+ * Indicates a page of results could not be fetched while iterating over
+ * a {@link QueryIterator}.
+ *
+ * <p>Unchecked, as {@link java.util.Iterator} methods cannot throw checked exceptions. The
+ * cause holds the error that occurred (an {@link E3DBException}, for E3DB-specific errors).
+ */
+public class E3DBQueryException extends RuntimeException {
+  public E3DBQueryException(Throwable cause) {
+    super(cause.getMessage(), cause);
+  }
+}
@@ -0,0 +1,14 @@
+package com.tozny.e3db;
+
+/**
+ * Indicates an operation was not run because the client already had too many operations
+ * pending.
+ *
+ * <p>See {@link AdmissionPolicy} for the conditions that cause this exception. The operation did not
+ * contact E3DB, so it is always safe to retry.
+ */
+public class E3DBRejectedException extends E3DBException {
+  public E3DBRejectedException(String message) {
+    super(message);
+  }
+}
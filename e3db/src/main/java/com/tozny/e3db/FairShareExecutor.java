@@ -0,0 +1,137 @@
+package com.tozny.e3db;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.tozny.e3db.Checks.*;
+
+/**
+ * A fixed pool of threads that can be shared by many {@link Client} instances, running
+ * their operations in round-robin order.
+ *
+ * <p>Each client built with {@link ClientBuilder#setExecutor(Executor)} given an instance of
+ * this class receives its own lane. Worker threads take one operation from each lane with work
+ * waiting, in turn, so a client submitting a large batch of operations does not delay the operations
+ * of other clients by more than one turn of the pool.
+ *
+ * <pre>
+ * FairShareExecutor pool = new FairShareExecutor(8);
+ * Client tenantA = new ClientBuilder().fromConfig(configA).setExecutor(pool).build();
+ * Client tenantB = new ClientBuilder().fromConfig(configB).setExecutor(pool).build();
+ * </pre>
+ *
+ * <p>Runnables given directly to {@link #execute(Runnable)} share a single lane.
+ *
+ * <p>Worker threads are daemon threads. Call {@link #shutdown()} to stop them once no
+ * clients use the pool.
+ */
+public class FairShareExecutor implements Executor {
+  private final Object lock = new Object();
+  // Lanes with work waiting, in the order they will be served.
+  private final ArrayDeque<Lane> ready = new ArrayDeque<>();
+  private final Lane defaultLane = new Lane();
+  private final Thread[] workers;
+  private boolean shutdown = false;
+
+  private class Lane implements Executor {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean scheduled = false;
+
+    @Override
+    public void execute(Runnable runnable) {
+      checkNotNull(runnable, "runnable");
+      synchronized (lock) {
+        if (shutdown)
+          throw new RejectedExecutionException("FairShareExecutor has been shut down.");
+
+        tasks.addLast(runnable);
+        if (!scheduled) {
+          scheduled = true;
+          ready.addLast(this);
+          lock.notify();
+        }
+      }
+    }
+  }
+
+  /**
+   * Create a pool with the given number of worker threads.
+   *
+   * @param threads Must be greater than zero.
+   */
+  public FairShareExecutor(int threads) {
+    if (threads <= 0)
+      throw new IllegalArgumentException("threads: must be greater than zero.");
+
+    workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      }, "E3DB fair-share " + (i + 1));
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Create a new lane. Each lane is served in turn with every other lane that has
+   * work waiting.
+   *
+   * <p>{@link ClientBuilder} calls this method for every client built with this executor; it
+   * only needs to be called directly to share the pool with work outside E3DB.
+   */
+  public Executor newLane() {
+    return new Lane();
+  }
+
+  @Override
+  public void execute(Runnable runnable) {
+    defaultLane.execute(runnable);
+  }
+
+  /**
+   * Stop accepting work. Worker threads exit once every waiting operation has run.
+   */
+  public void shutdown() {
+    synchronized (lock) {
+      shutdown = true;
+      lock.notifyAll();
+    }
+  }
+
+  private void work() {
+    while (true) {
+      Runnable next;
+      synchronized (lock) {
+        while (ready.isEmpty()) {
+          if (shutdown)
+            return;
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+
+        Lane lane = ready.pollFirst();
+        next = lane.tasks.pollFirst();
+        if (lane.tasks.isEmpty())
+          lane.scheduled = false;
+        else
+          ready.addLast(lane);
+      }
+
+      try {
+        next.run();
+      } catch (RuntimeException e) {
+        Thread.UncaughtExceptionHandler handler = Thread.currentThread().getUncaughtExceptionHandler();
+        if (handler != null)
+          handler.uncaughtException(Thread.currentThread(), e);
+      }
+    }
+  }
+}
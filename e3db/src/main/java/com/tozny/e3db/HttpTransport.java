@@ -0,0 +1,65 @@
+package com.tozny.e3db;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+
+/**
+ * The HTTP connections used to reach E3DB, shared by any number of clients. The default {@link Transport}.
+ *
+ * <p>Clients using the same transport share its connection pool, so clients pointed at the same
+ * host reuse each other's warm (and, with HTTP/2, multiplexed) connections rather than each
+ * opening its own. They also share its limits on requests in flight.
+ *
+ * <p>By default, every client uses {@link #shared()}. Use {@link HttpTransportBuilder} to create a
+ * transport with other settings, and pass it to {@link ClientBuilder#setTransport(Transport)}.
+ */
+public class HttpTransport implements Transport {
+  /**
+   * Threads making calls for non-blocking clients; the transport's dispatcher limits how many are used.
+   */
+  static final ExecutorService ioExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+    new SynchronousQueue<Runnable>(),
+    new ThreadFactory() {
+      private final AtomicInteger threadCount = new AtomicInteger(1);
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+        thread.setDaemon(true);
+        thread.setName("E3DB I/O " + threadCount.getAndIncrement());
+        return thread;
+      }
+    });
+
+  private static final HttpTransport shared = new HttpTransportBuilder().build();
+
+  private final OkHttpClient http;
+
+  HttpTransport(OkHttpClient http) {
+    this.http = http;
+  }
+
+  /**
+   * The transport used by clients that do not specify one, with the defaults described in {@link HttpTransportBuilder}.
+   */
+  public static HttpTransport shared() {
+    return shared;
+  }
+
+  @Override
+  public Call.Factory callFactory(List<Interceptor> interceptors) {
+    // Derived clients share the connection pool and dispatcher.
+    OkHttpClient.Builder builder = http.newBuilder();
+    builder.interceptors().addAll(interceptors);
+    return builder.build();
+  }
+}
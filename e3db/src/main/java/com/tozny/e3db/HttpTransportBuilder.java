@@ -0,0 +1,165 @@
+package com.tozny.e3db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import static com.tozny.e3db.Checks.*;
+
+/**
+ * Builds an {@link HttpTransport}, which can then be shared by any number of clients.
+ *
+ * <p>For example, to allow more connections to stay open for a gateway serving many clients:
+ *
+ * <pre>
+ * HttpTransport transport = new HttpTransportBuilder()
+ *   .setMaxIdleConnections(32)
+ *   .setMaxRequestsPerHost(256)
+ *   .build();
+ *
+ * Client client = new ClientBuilder()
+ *   .fromConfig(config)
+ *   .setTransport(transport)
+ *   .build();
+ * </pre>
+ */
+public class HttpTransportBuilder {
+  private int maxIdleConnections = 16;
+  private long keepAlive = 5;
+  private TimeUnit keepAliveUnit = TimeUnit.MINUTES;
+  private int maxRequests = 64;
+  private int maxRequestsPerHost = 64;
+  private boolean http2 = true;
+  private long connectTimeout = 10;
+  private long readTimeout = 10;
+  private TimeUnit timeoutUnit = TimeUnit.SECONDS;
+
+  /**
+   * Configure the number of idle connections kept open for later requests.
+   *
+   * <p>Defaults to 16.
+   *
+   * @param maxIdleConnections Must be greater than or equal to zero.
+   * @return This instance.
+   */
+  public HttpTransportBuilder setMaxIdleConnections(int maxIdleConnections) {
+    if (maxIdleConnections < 0)
+      throw new IllegalArgumentException("maxIdleConnections: must be greater than or equal to zero.");
+
+    this.maxIdleConnections = maxIdleConnections;
+    return this;
+  }
+
+  /**
+   * Configure how long an idle connection is kept open.
+   *
+   * <p>Defaults to 5 minutes.
+   *
+   * @param keepAlive Must be greater than zero.
+   * @param unit Unit of {@code keepAlive}.
+   * @return This instance.
+   */
+  public HttpTransportBuilder setKeepAlive(long keepAlive, TimeUnit unit) {
+    checkNotNull(unit, "unit");
+    if (keepAlive <= 0)
+      throw new IllegalArgumentException("keepAlive: must be greater than zero.");
+
+    this.keepAlive = keepAlive;
+    this.keepAliveUnit = unit;
+    return this;
+  }
+
+  /**
+   * Configure the maximum number of requests made by non-blocking clients (see
+   * {@link ClientBuilder#setNonBlocking(boolean)}) at once, across every client using the transport.
+   * Further requests wait their turn.
+   *
+   * <p>Defaults to 64.
+   *
+   * @param maxRequests Must be greater than zero.
+   * @return This instance.
+   */
+  public HttpTransportBuilder setMaxRequests(int maxRequests) {
+    if (maxRequests <= 0)
+      throw new IllegalArgumentException("maxRequests: must be greater than zero.");
+
+    this.maxRequests = maxRequests;
+    return this;
+  }
+
+  /**
+   * Configure the maximum number of requests made by non-blocking clients to one host at once.
+   *
+   * <p>Defaults to 64.
+   *
+   * @param maxRequestsPerHost Must be greater than zero.
+   * @return This instance.
+   */
+  public HttpTransportBuilder setMaxRequestsPerHost(int maxRequestsPerHost) {
+    if (maxRequestsPerHost <= 0)
+      throw new IllegalArgumentException("maxRequestsPerHost: must be greater than zero.");
+
+    this.maxRequestsPerHost = maxRequestsPerHost;
+    return this;
+  }
+
+  /**
+   * Configure whether HTTP/2 may be used, if the server supports it.
+   *
+   * <p>Defaults to {@code true}. Over HTTP/2, requests to a host are multiplexed over one connection;
+   * when {@code false}, HTTP/1.1 is always used, with one request per connection at a time.
+   *
+   * @return This instance.
+   */
+  public HttpTransportBuilder setHttp2(boolean http2) {
+    this.http2 = http2;
+    return this;
+  }
+
+  /**
+   * Configure how long to wait when connecting, and when waiting for a response.
+   *
+   * <p>Both default to 10 seconds.
+   *
+   * @param connectTimeout Must be greater than or equal to zero; zero means no timeout.
+   * @param readTimeout Must be greater than or equal to zero; zero means no timeout.
+   * @param unit Unit of both timeouts.
+   * @return This instance.
+   */
+  public HttpTransportBuilder setTimeouts(long connectTimeout, long readTimeout, TimeUnit unit) {
+    checkNotNull(unit, "unit");
+    if (connectTimeout < 0)
+      throw new IllegalArgumentException("connectTimeout: must be greater than or equal to zero.");
+    if (readTimeout < 0)
+      throw new IllegalArgumentException("readTimeout: must be greater than or equal to zero.");
+
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.timeoutUnit = unit;
+    return this;
+  }
+
+  /**
+   * Create a transport based on configured parameters.
+   *
+   * @return A transport, which any number of clients can share.
+   */
+  public HttpTransport build() {
+    Dispatcher dispatcher = new Dispatcher(HttpTransport.ioExecutor);
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+    return new HttpTransport(new OkHttpClient.Builder()
+      .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive, keepAliveUnit))
+      .dispatcher(dispatcher)
+      .protocols(http2 ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1))
+      .connectTimeout(connectTimeout, timeoutUnit)
+      .readTimeout(readTimeout, timeoutUnit)
+      .build());
+  }
+}
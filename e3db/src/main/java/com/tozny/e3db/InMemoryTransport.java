@@ -0,0 +1,94 @@
+package com.tozny.e3db;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static com.tozny.e3db.Checks.*;
+
+/**
+ * A transport that answers requests in the same process, without opening any sockets.
+ *
+ * <p>Requests are passed to a {@link Handler}, which might be a stand-in for E3DB or a canned
+ * response. Useful for measuring the client's own overhead (encryption, JSON and scheduling) apart
+ * from the network's, and for tests:
+ *
+ * <pre>
+ * Transport transport = new InMemoryTransport(new InMemoryTransport.Handler() {
+ *   public Response handle(Request request) {
+ *     return InMemoryTransport.response(request, 200, "{ ... }");
+ *   }
+ * });
+ * </pre>
+ *
+ * <p>Blocking calls run the handler on the calling thread; asynchronous calls run it on a background thread.
+ */
+public class InMemoryTransport implements Transport {
+  private static final MediaType APPLICATION_JSON = MediaType.parse("application/json");
+
+  /**
+   * Answers requests made with an {@link InMemoryTransport}.
+   */
+  public interface Handler {
+    /**
+     * Answers {@code request}. May be called by many threads at once.
+     *
+     * @return The response, which must be for {@code request} (see {@link #response(Request, int, String)}).
+     * @throws IOException To fail the call, as a network error would.
+     */
+    Response handle(Request request) throws IOException;
+  }
+
+  private final OkHttpClient http;
+
+  public InMemoryTransport(final Handler handler) {
+    checkNotNull(handler, "handler");
+
+    Dispatcher dispatcher = new Dispatcher(HttpTransport.ioExecutor);
+    dispatcher.setMaxRequests(1024);
+    dispatcher.setMaxRequestsPerHost(1024);
+    http = new OkHttpClient.Builder()
+      .dispatcher(dispatcher)
+      // Answers the request before OkHttp's own interceptors (which would connect) run.
+      .addInterceptor(new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+          return handler.handle(chain.request());
+        }
+      })
+      .build();
+  }
+
+  @Override
+  public Call.Factory callFactory(List<Interceptor> interceptors) {
+    OkHttpClient.Builder builder = http.newBuilder();
+    // Before the handler.
+    builder.interceptors().addAll(0, interceptors);
+    return builder.build();
+  }
+
+  /**
+   * A response to {@code request}, with a JSON body.
+   *
+   * @param code HTTP status code.
+   * @param json Body of the response; may be {@code null} for an empty body.
+   */
+  public static Response response(Request request, int code, String json) {
+    return new Response.Builder()
+      .request(request)
+      .protocol(Protocol.HTTP_1_1)
+      .code(code)
+      .message(Integer.toString(code))
+      .body(ResponseBody.create(APPLICATION_JSON, json == null ? "" : json))
+      .build();
+  }
+}
@@ -0,0 +1,130 @@
+package com.tozny.e3db;
+
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Parses the timestamps E3DB returns in record metadata ({@code yyyy-MM-dd'T'HH:mm:ss.SSSSSS},
+ * usually followed by {@code Z}).
+ *
+ * <p>Unlike {@link java.text.SimpleDateFormat}, safe to use from any number of threads at once,
+ * and it allocates nothing but the result. Times without a zone are taken to be UTC. Fractions of
+ * a second may have any number of digits; digits beyond milliseconds are dropped.
+ */
+class Iso8601 {
+  private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+  private Iso8601() {
+  }
+
+  static Date parse(String text) throws ParseException {
+    return new Date(parseMillis(text));
+  }
+
+  /**
+   * Milliseconds since the epoch for the given timestamp.
+   */
+  static long parseMillis(String text) throws ParseException {
+    if (text == null)
+      throw new ParseException("null timestamp", 0);
+
+    int year = digits(text, 0, 4);
+    expect(text, 4, '-');
+    int month = digits(text, 5, 2);
+    expect(text, 7, '-');
+    int day = digits(text, 8, 2);
+    expect(text, 10, 'T');
+    int hour = digits(text, 11, 2);
+    expect(text, 13, ':');
+    int minute = digits(text, 14, 2);
+    expect(text, 16, ':');
+    int second = digits(text, 17, 2);
+
+    if (month < 1 || month > 12)
+      throw new ParseException("Invalid month: " + text, 5);
+    if (day < 1 || day > DAYS_IN_MONTH[month - 1] || (month == 2 && day == 29 && !isLeap(year)))
+      throw new ParseException("Invalid day: " + text, 8);
+    if (hour > 23)
+      throw new ParseException("Invalid hour: " + text, 11);
+    if (minute > 59)
+      throw new ParseException("Invalid minute: " + text, 14);
+    if (second > 59)
+      throw new ParseException("Invalid second: " + text, 17);
+
+    int pos = 19;
+    int millis = 0;
+    if (pos < text.length() && text.charAt(pos) == '.') {
+      pos++;
+      int start = pos;
+      while (pos < text.length() && isDigit(text.charAt(pos))) {
+        if (pos - start < 3)
+          millis = millis * 10 + (text.charAt(pos) - '0');
+        pos++;
+      }
+      if (pos == start)
+        throw new ParseException("Missing fraction: " + text, pos);
+      for (int scale = pos - start; scale < 3; scale++)
+        millis *= 10;
+    }
+
+    int offsetMinutes = 0;
+    if (pos < text.length()) {
+      char zone = text.charAt(pos);
+      if (zone == 'Z' && pos + 1 == text.length()) {
+        pos++;
+      } else if ((zone == '+' || zone == '-') && pos + 6 == text.length()) {
+        int offsetHours = digits(text, pos + 1, 2);
+        expect(text, pos + 3, ':');
+        offsetMinutes = offsetHours * 60 + digits(text, pos + 4, 2);
+        if (zone == '-')
+          offsetMinutes = -offsetMinutes;
+        pos += 6;
+      } else {
+        throw new ParseException("Unexpected text: " + text, pos);
+      }
+    }
+
+    long seconds = daysSinceEpoch(year, month, day) * 86400L + hour * 3600L + minute * 60L + second - offsetMinutes * 60L;
+    return seconds * 1000L + millis;
+  }
+
+  /**
+   * Days from 1970-01-01 to the given date (proleptic Gregorian).
+   */
+  private static long daysSinceEpoch(int year, int month, int day) {
+    // Count from March 1st, so the leap day falls at the end of the year.
+    long y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  private static boolean isLeap(int year) {
+    return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static int digits(String text, int pos, int count) throws ParseException {
+    if (pos + count > text.length())
+      throw new ParseException("Timestamp too short: " + text, text.length());
+
+    int value = 0;
+    for (int i = pos; i < pos + count; i++) {
+      char c = text.charAt(i);
+      if (!isDigit(c))
+        throw new ParseException("Expected a digit: " + text, i);
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static void expect(String text, int pos, char c) throws ParseException {
+    if (pos >= text.length() || text.charAt(pos) != c)
+      throw new ParseException("Expected '" + c + "': " + text, pos);
+  }
+}
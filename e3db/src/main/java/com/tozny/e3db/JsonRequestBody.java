@@ -0,0 +1,66 @@
+package com.tozny.e3db;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * A request body written as JSON straight into the request, with a streaming
+ * {@link JsonGenerator} &mdash; the body is never built up as a map or a string.
+ *
+ * <p>{@link #write(JsonGenerator)} runs each time the body is sent (so again if
+ * OkHttp retries or follows a redirect), and must write the same bytes each time.
+ * Do work that differs between runs, such as encryption with fresh keys and nonces,
+ * when the body is created.
+ */
+abstract class JsonRequestBody extends RequestBody {
+  private static final MediaType APPLICATION_JSON = MediaType.parse("application/json");
+  private static final JsonFactory factory = new JsonFactory()
+    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  /**
+   * Writes the body.
+   */
+  protected abstract void write(JsonGenerator gen) throws IOException;
+
+  @Override
+  public MediaType contentType() {
+    return APPLICATION_JSON;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    JsonGenerator gen = factory.createGenerator(sink.outputStream());
+    try {
+      write(gen);
+    } finally {
+      gen.close();
+    }
+  }
+
+  /**
+   * This body, written now, in memory.
+   */
+  RequestBody buffered() throws IOException {
+    Buffer buffer = new Buffer();
+    writeTo(buffer);
+    return RequestBody.create(APPLICATION_JSON, buffer.readByteString());
+  }
+
+  /**
+   * Writes the field {@code name} as an array of strings, made with {@code toString()}.
+   */
+  static void writeArray(JsonGenerator gen, String name, List<?> values) throws IOException {
+    gen.writeArrayFieldStart(name);
+    for (Object value : values)
+      gen.writeString(value.toString());
+    gen.writeEndArray();
+  }
+}
@@ -0,0 +1,87 @@
+package com.tozny.e3db;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a loop body over a range of indices on several threads at once.
+ *
+ * <p>The calling thread takes part in the loop, and helpers only claim indices once they
+ * start running. So the loop always completes, even if the executor is busy (or is the
+ * executor running the caller).
+ */
+class Parallel {
+  interface Body {
+    void run(int i);
+  }
+
+  private Parallel() {
+  }
+
+  /**
+   * Runs {@code body} for each index from 0 to {@code count - 1}, on up to {@code parallelism}
+   * threads (including the caller). Returns once every index has been run. If the body throws,
+   * remaining indices are skipped and the first exception is rethrown.
+   */
+  static void forEach(Executor executor, int parallelism, final int count, final Body body) {
+    if (count <= 0)
+      return;
+
+    final Object lock = new Object();
+    final AtomicInteger next = new AtomicInteger(0);
+    final AtomicInteger completed = new AtomicInteger(0);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        int i;
+        while ((i = next.getAndIncrement()) < count) {
+          try {
+            if (failure.get() == null)
+              body.run(i);
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            if (completed.incrementAndGet() == count) {
+              synchronized (lock) {
+                lock.notifyAll();
+              }
+            }
+          }
+        }
+      }
+    };
+
+    int helpers = Math.min(parallelism, count) - 1;
+    for (int h = 0; h < helpers; h++) {
+      try {
+        executor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        break;
+      }
+    }
+    worker.run();
+
+    boolean interrupted = false;
+    synchronized (lock) {
+      while (completed.get() < count) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+
+    Throwable e = failure.get();
+    if (e instanceof RuntimeException)
+      throw (RuntimeException) e;
+    else if (e instanceof Error)
+      throw (Error) e;
+  }
+}
@@ -0,0 +1,142 @@
+package com.tozny.e3db;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over every record matching a query, fetching pages of results as needed.
+ *
+ * <p>Returned by {@link Client#queryAll(QueryParams)}. While the records in one page are being consumed, the
+ * following pages are fetched in the background (up to the prefetch depth given to
+ * {@link Client#queryAll(QueryParams, int)}), so the network is not idle while your code processes each page.
+ *
+ * <p>{@link #hasNext()} blocks until the next page arrives; never call it on Android's UI thread. If fetching a
+ * page fails, {@code hasNext()} and {@code next()} throw an {@link E3DBQueryException} holding the error. Call
+ * {@link #close()} to stop fetching pages if you stop iterating before the end.
+ *
+ * <p>Instances are not safe for use by multiple threads at once.
+ */
+public class QueryIterator implements Iterator<Record>, Closeable {
+  private final Client client;
+  private final QueryParams params;
+  private final int prefetch;
+
+  private final Object lock = new Object();
+  private final ArrayDeque<QueryResponse> ready = new ArrayDeque<>();
+  private long after;
+  private boolean fetching = false;
+  private boolean done = false;
+  private boolean closed = false;
+  private Throwable error = null;
+
+  private Iterator<Record> current = null;
+
+  QueryIterator(Client client, QueryParams params, int prefetch) {
+    this.client = client;
+    this.params = params;
+    this.prefetch = prefetch;
+    this.after = params.after;
+    fetch();
+  }
+
+  /**
+   * Fetch the next page, if none is being fetched and fewer than {@code prefetch} are waiting. Must not be
+   * called holding {@code lock}: the request may complete on this thread (for example, when it is rejected),
+   * and its completion calls back into this method.
+   */
+  private void fetch() {
+    QueryParams page;
+    int priority;
+    synchronized (lock) {
+      if (fetching || done || closed || error != null || ready.size() >= prefetch)
+        return;
+
+      fetching = true;
+      // Pages fetched ahead of the consumer give way to other operations.
+      priority = ready.isEmpty() ? Admission.PRIORITY_NORMAL : Admission.PRIORITY_LOW;
+      page = params.buildOn().setAfter(after).build();
+    }
+
+    client.queryPage(page, priority, new ResultFuture.Completer<QueryResponse>() {
+      @Override
+      public void handle(Result<QueryResponse> r) {
+        synchronized (lock) {
+          fetching = false;
+          if (r.isError()) {
+            error = r.asError().other();
+          } else if (r.asValue().records().isEmpty()) {
+            done = true;
+          } else {
+            ready.addLast(r.asValue());
+            after = r.asValue().last();
+          }
+          lock.notifyAll();
+        }
+        fetch();
+      }
+    });
+  }
+
+  /**
+   * Whether another record is available, waiting for the next page to arrive if necessary.
+   *
+   * @throws E3DBQueryException If a page could not be fetched.
+   */
+  @Override
+  public boolean hasNext() {
+    while (current == null || !current.hasNext()) {
+      synchronized (lock) {
+        boolean interrupted = false;
+        while (ready.isEmpty() && !done && !closed && error == null) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted)
+          Thread.currentThread().interrupt();
+
+        if (!ready.isEmpty()) {
+          current = ready.pollFirst().records().iterator();
+        } else if (error != null) {
+          throw new E3DBQueryException(error);
+        } else {
+          return false;
+        }
+      }
+      fetch();
+    }
+    return true;
+  }
+
+  /**
+   * The next record, waiting for the next page to arrive if necessary.
+   *
+   * @throws E3DBQueryException If a page could not be fetched.
+   */
+  @Override
+  public Record next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    return current.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  /**
+   * Stop fetching pages. Records already fetched can still be read.
+   */
+  @Override
+  public void close() {
+    synchronized (lock) {
+      closed = true;
+      lock.notifyAll();
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.tozny.e3db;
+
+/**
+ * A point-in-time snapshot of the operations pending for a {@link Client}.
+ *
+ * <p>Use {@link Client#queueStats()} to obtain an instance. {@code queued} and {@code running} are
+ * gauges; {@code rejected} and {@code shed} are cumulative over the lifetime of the client.
+ */
+public class QueueStats {
+  /**
+   * Number of operations waiting to run.
+   */
+  public final int queued;
+  /**
+   * Number of operations currently running.
+   */
+  public final int running;
+  /**
+   * Number of new operations refused because the queue was full.
+   */
+  public final long rejected;
+  /**
+   * Number of waiting operations dropped to make room for new ones (see {@link AdmissionPolicy#SHED}).
+   */
+  public final long shed;
+
+  QueueStats(int queued, int running, long rejected, long shed) {
+    this.queued = queued;
+    this.running = running;
+    this.rejected = rejected;
+    this.shed = shed;
+  }
+}
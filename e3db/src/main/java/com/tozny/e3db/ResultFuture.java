@@ -0,0 +1,308 @@
+package com.tozny.e3db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.tozny.e3db.Checks.*;
+
+/**
+ * The pending result of an asynchronous E3DB operation.
+ *
+ * <p>Instances are returned by the {@code ...Async} methods on {@link Client}, such as
+ * {@link Client#writeAsync(String, RecordData, java.util.Map)}. Unlike the {@link ResultHandler}-based methods, results
+ * are not posted to the UI thread (on Android); the future completes on the background thread that ran the
+ * operation. Block for the result with {@link #get()}, or register a listener with
+ * {@link #addListener(ResultHandler)} or {@link #addListener(ResultHandler, Executor)}.
+ *
+ * <h1>Composition</h1>
+ * Use {@link #map(Transform)} to transform a result, {@link #flatMap(Transform)} to start another operation once this one
+ * completes, and {@link #all(List)} to wait for a number of operations at once. For example, to write a set of records
+ * and wait for all of them:
+ *
+ * <pre>
+ * List&lt;ResultFuture&lt;Record&gt;&gt; writes = new ArrayList&lt;&gt;();
+ * for (RecordData data : records)
+ *   writes.add(client.writeAsync("contact", data, null));
+ * List&lt;Record&gt; written = ResultFuture.all(writes).get();
+ * </pre>
+ *
+ * <h1>Java 8</h1>
+ * A {@code ResultFuture} converts to a {@code CompletableFuture} with a listener:
+ *
+ * <pre>
+ * CompletableFuture&lt;Record&gt; cf = new CompletableFuture&lt;&gt;();
+ * client.readAsync(recordId).addListener(r -&gt; {
+ *   if (r.isError()) cf.completeExceptionally(r.asError().other());
+ *   else cf.complete(r.asValue());
+ * });
+ * </pre>
+ *
+ * <p>E3DB operations cannot be cancelled once started; {@link #cancel(boolean)} always returns {@code false}.
+ *
+ * @param <R> The type of value returned when the operation completes successfully.
+ */
+public class ResultFuture<R> implements Future<R> {
+  /**
+   * Transforms the value of a completed operation.
+   *
+   * @param <A> Type of the value given.
+   * @param <B> Type of the value returned.
+   */
+  public interface Transform<A, B> {
+    /**
+     * Transforms {@code value}. Any exception thrown completes the resulting future with that error.
+     */
+    B apply(A value) throws Exception;
+  }
+
+  /**
+   * Marker for handlers that complete a future. {@link Client} runs these directly on the
+   * background thread, rather than posting them to the UI thread.
+   */
+  interface Completer<R> extends ResultHandler<R> {
+  }
+
+  private final CountDownLatch done = new CountDownLatch(1);
+  private final Object lock = new Object();
+  private List<ResultHandler<R>> listeners = new ArrayList<>();
+  private volatile Result<R> result = null;
+
+  ResultFuture() {
+  }
+
+  /**
+   * A handler that completes this future when called.
+   */
+  Completer<R> completer() {
+    return new Completer<R>() {
+      @Override
+      public void handle(Result<R> r) {
+        complete(r);
+      }
+    };
+  }
+
+  void complete(Result<R> r) {
+    List<ResultHandler<R>> toNotify;
+    synchronized (lock) {
+      if (result != null)
+        return;
+      result = r;
+      toNotify = listeners;
+      listeners = null;
+    }
+    done.countDown();
+    for (ResultHandler<R> listener : toNotify)
+      listener.handle(r);
+  }
+
+  /**
+   * Create a future that has already completed with the given result.
+   */
+  public static <R> ResultFuture<R> completed(Result<R> result) {
+    checkNotNull(result, "result");
+    ResultFuture<R> future = new ResultFuture<>();
+    future.complete(result);
+    return future;
+  }
+
+  /**
+   * Call {@code listener} when the operation completes (or immediately, if it already has).
+   *
+   * <p>The listener runs on the thread that completes the operation, which is usually an E3DB background thread. Keep
+   * it short, or use {@link #addListener(ResultHandler, Executor)} to run it elsewhere.
+   *
+   * @return This instance.
+   */
+  public ResultFuture<R> addListener(ResultHandler<R> listener) {
+    checkNotNull(listener, "listener");
+    Result<R> r;
+    synchronized (lock) {
+      r = result;
+      if (r == null)
+        listeners.add(listener);
+    }
+    if (r != null)
+      listener.handle(r);
+    return this;
+  }
+
+  /**
+   * Call {@code listener} on the given executor when the operation completes.
+   *
+   * @return This instance.
+   */
+  public ResultFuture<R> addListener(final ResultHandler<R> listener, final Executor executor) {
+    checkNotNull(listener, "listener");
+    checkNotNull(executor, "executor");
+    return addListener(new ResultHandler<R>() {
+      @Override
+      public void handle(final Result<R> r) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            listener.handle(r);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Returns a future holding the result of applying {@code transform} to this future's value. Errors are passed through
+   * unchanged.
+   */
+  public <T> ResultFuture<T> map(final Transform<? super R, ? extends T> transform) {
+    checkNotNull(transform, "transform");
+    final ResultFuture<T> mapped = new ResultFuture<>();
+    addListener(new ResultHandler<R>() {
+      @Override
+      public void handle(Result<R> r) {
+        if (r.isError()) {
+          mapped.complete(new ErrorResult<T>(r.asError().other()));
+          return;
+        }
+
+        Result<T> next;
+        try {
+          next = new ValueResult<T>(transform.apply(r.asValue()));
+        } catch (Throwable e) {
+          next = new ErrorResult<T>(e);
+        }
+        mapped.complete(next);
+      }
+    });
+    return mapped;
+  }
+
+  /**
+   * Returns a future that completes with the result of the future returned by {@code transform}. Use this method
+   * to start another operation when this one completes. Errors are passed through unchanged.
+   */
+  public <T> ResultFuture<T> flatMap(final Transform<? super R, ResultFuture<T>> transform) {
+    checkNotNull(transform, "transform");
+    final ResultFuture<T> chained = new ResultFuture<>();
+    addListener(new ResultHandler<R>() {
+      @Override
+      public void handle(Result<R> r) {
+        if (r.isError()) {
+          chained.complete(new ErrorResult<T>(r.asError().other()));
+          return;
+        }
+
+        ResultFuture<T> next;
+        try {
+          next = transform.apply(r.asValue());
+          if (next == null)
+            throw new NullPointerException("transform returned null.");
+        } catch (Throwable e) {
+          chained.complete(new ErrorResult<T>(e));
+          return;
+        }
+        next.addListener(chained.completer());
+      }
+    });
+    return chained;
+  }
+
+  /**
+   * Returns a future that completes when every future given has completed. Its value holds each result, in the
+   * same order as {@code futures}. If any future fails, the returned future fails with the first error to occur.
+   */
+  public static <R> ResultFuture<List<R>> all(final List<ResultFuture<R>> futures) {
+    checkNotNull(futures, "futures");
+    final ResultFuture<List<R>> all = new ResultFuture<>();
+    final int size = futures.size();
+    if (size == 0) {
+      all.complete(new ValueResult<List<R>>(new ArrayList<R>()));
+      return all;
+    }
+
+    final Object[] values = new Object[size];
+    final AtomicInteger remaining = new AtomicInteger(size);
+    for (int i = 0; i < size; i++) {
+      final int idx = i;
+      futures.get(i).addListener(new ResultHandler<R>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handle(Result<R> r) {
+          if (r.isError()) {
+            all.complete(new ErrorResult<List<R>>(r.asError().other()));
+            return;
+          }
+
+          values[idx] = r.asValue();
+          if (remaining.decrementAndGet() == 0) {
+            List<R> results = new ArrayList<>(size);
+            for (Object value : values)
+              results.add((R) value);
+            all.complete(new ValueResult<List<R>>(results));
+          }
+        }
+      });
+    }
+    return all;
+  }
+
+  /**
+   * Always returns {@code false}; E3DB operations cannot be cancelled.
+   */
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return false;
+  }
+
+  /**
+   * Always returns {@code false}.
+   */
+  @Override
+  public boolean isCancelled() {
+    return false;
+  }
+
+  @Override
+  public boolean isDone() {
+    return result != null;
+  }
+
+  /**
+   * Waits for the operation to complete and returns its value.
+   *
+   * @throws ExecutionException If the operation failed. {@link ExecutionException#getCause()} holds the error (which will be
+   * an {@link E3DBException} for E3DB-specific errors).
+   */
+  @Override
+  public R get() throws InterruptedException, ExecutionException {
+    done.await();
+    return value();
+  }
+
+  @Override
+  public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    if (!done.await(timeout, unit))
+      throw new TimeoutException();
+    return value();
+  }
+
+  /**
+   * Waits for the operation to complete and returns its result, without throwing for errors.
+   */
+  public Result<R> result() throws InterruptedException {
+    done.await();
+    return result;
+  }
+
+  private R value() throws ExecutionException {
+    Result<R> r = result;
+    if (r.isError())
+      throw new ExecutionException(r.asError().other());
+    return r.asValue();
+  }
+}
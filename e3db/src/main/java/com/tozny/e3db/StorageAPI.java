@@ -9,12 +9,14 @@ import retrofit2.http.GET;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
 
 interface StorageAPI {
   @GET("/v1/storage/records/{record_ids}")
   Call<ResponseBody> getRecord(@Path("record_ids") String recordIds);
 
   @POST("/v1/storage/search")
+  @Streaming
   Call<ResponseBody> query(@Body RequestBody queryRequest);
 
   @POST("/v1/storage/records")
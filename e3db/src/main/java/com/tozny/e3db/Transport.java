@@ -0,0 +1,27 @@
+package com.tozny.e3db;
+
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+
+/**
+ * Carries a client's requests to E3DB, and brings back the responses.
+ *
+ * <p>{@link HttpTransport} (the default) sends requests over the network with OkHttp.
+ * {@link InMemoryTransport} answers them in the same process, which is useful for
+ * measuring the client's own overhead (and for tests). Other HTTP stacks can be used
+ * by adapting them to OkHttp's {@link Call} interface.
+ */
+public interface Transport {
+  /**
+   * Creates calls for one client.
+   *
+   * @param interceptors Applied, in order, to every request made with the returned factory
+   *                     (before it is sent). They add credentials to each request, so must not
+   *                     be skipped.
+   * @return A call factory; used for both blocking ({@link Call#execute()}) and asynchronous
+   * ({@link Call#enqueue(okhttp3.Callback)}) calls.
+   */
+  Call.Factory callFactory(List<Interceptor> interceptors);
+}
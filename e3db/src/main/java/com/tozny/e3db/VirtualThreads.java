@@ -0,0 +1,40 @@
+package com.tozny.e3db;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Finds virtual threads (Java 21 and later) at runtime, so the library itself
+ * still compiles for (and runs on) earlier versions of Java and Android.
+ */
+class VirtualThreads {
+  private static final Executor executor = find();
+
+  private VirtualThreads() {
+  }
+
+  private static Executor find() {
+    try {
+      // Thread.ofVirtual().name("E3DB virtual ", 1).factory()
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "E3DB virtual ", 1L);
+      ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+      Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (Executor) newExecutor.invoke(null, factory);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * An executor that runs each task on a new virtual thread, or {@code null} if
+   * virtual threads are not available.
+   */
+  static Executor executor() {
+    return executor;
+  }
+}
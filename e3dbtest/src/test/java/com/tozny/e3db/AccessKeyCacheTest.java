@@ -0,0 +1,102 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+public class AccessKeyCacheTest {
+  private static final UUID writer = UUID.randomUUID();
+  private static final UUID reader = UUID.randomUUID();
+  private static final byte[] ak = new byte[] { 1, 2, 3 };
+
+  @Test
+  public void testHitAndMiss() {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 10);
+    assertNull(cache.get(writer, writer, reader, "type"));
+    cache.put(writer, writer, reader, "type", ak);
+    assertSame(ak, cache.get(writer, writer, reader, "type"));
+    assertNull(cache.get(writer, writer, reader, "other"));
+
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hits);
+    assertEquals(2, stats.misses);
+    assertEquals(1, stats.size);
+  }
+
+  @Test
+  public void testPeek() {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 10);
+    assertNull(cache.peek(writer, writer, reader, "type"));
+    cache.put(writer, writer, reader, "type", ak);
+    assertSame(ak, cache.peek(writer, writer, reader, "type"));
+
+    // Not counted.
+    CacheStats stats = cache.stats();
+    assertEquals(0, stats.hits);
+    assertEquals(0, stats.misses);
+  }
+
+  @Test
+  public void testRemove() {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 10);
+    cache.put(writer, writer, reader, "type", ak);
+    cache.remove(writer, writer, reader, "type");
+    assertNull(cache.get(writer, writer, reader, "type"));
+  }
+
+  @Test
+  public void testExpiry() throws InterruptedException {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MILLISECONDS, 1, TimeUnit.MINUTES, 10);
+    cache.put(writer, writer, reader, "type", ak);
+    Thread.sleep(5);
+    assertNull(cache.get(writer, writer, reader, "type"));
+    assertEquals(0, cache.stats().size);
+  }
+
+  @Test
+  public void testMissing() {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 10);
+    cache.putMissing(writer, writer, reader, "type");
+    assertSame(AccessKeyCache.MISSING, cache.get(writer, writer, reader, "type"));
+    assertEquals(1, cache.stats().negativeHits);
+    assertEquals(0, cache.stats().hits);
+
+    cache.put(writer, writer, reader, "type", ak);
+    assertSame(ak, cache.get(writer, writer, reader, "type"));
+
+    // A late "missing" response never replaces a key stored since.
+    cache.putMissing(writer, writer, reader, "type");
+    assertSame(ak, cache.get(writer, writer, reader, "type"));
+  }
+
+  @Test
+  public void testMissingDisabled() {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MINUTES, 0, TimeUnit.SECONDS, 10);
+    cache.putMissing(writer, writer, reader, "type");
+    assertNull(cache.get(writer, writer, reader, "type"));
+  }
+
+  @Test
+  public void testEviction() {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 2);
+    cache.put(writer, writer, reader, "a", ak);
+    cache.put(writer, writer, reader, "b", ak);
+    cache.get(writer, writer, reader, "a");
+    cache.put(writer, writer, reader, "c", ak);
+
+    assertNotNull(cache.get(writer, writer, reader, "a"));
+    assertNull(cache.get(writer, writer, reader, "b"));
+    assertEquals(1, cache.stats().evictions);
+  }
+
+  @Test
+  public void testDisabled() {
+    AccessKeyCache cache = new AccessKeyCache(1, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 0);
+    cache.put(writer, writer, reader, "type", ak);
+    assertNull(cache.get(writer, writer, reader, "type"));
+    assertEquals(0, cache.stats().size);
+  }
+}
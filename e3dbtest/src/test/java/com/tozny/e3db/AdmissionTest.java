@@ -0,0 +1,139 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.*;
+
+public class AdmissionTest {
+  private static class Recorder implements Admission.Rejection {
+    private final List<String> rejected;
+    private final String name;
+
+    private Recorder(List<String> rejected, String name) {
+      this.rejected = rejected;
+      this.name = name;
+    }
+
+    @Override
+    public void rejected(E3DBRejectedException e) {
+      rejected.add(name);
+    }
+  }
+
+  private static Runnable await(final CountDownLatch latch) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+  }
+
+  private static void drain(Admission admission, ExecutorService executor) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (admission.stats().running > 0 && System.currentTimeMillis() < deadline)
+      Thread.sleep(1);
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(0, admission.stats().running);
+  }
+
+  @Test
+  public void testFailFast() throws InterruptedException {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> rejected = Collections.synchronizedList(new ArrayList<String>());
+    Admission admission = new Admission(executor, 1, 1, AdmissionPolicy.FAIL_FAST);
+
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "a"));
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "b"));
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "c"));
+
+    assertEquals(Collections.singletonList("c"), rejected);
+    QueueStats stats = admission.stats();
+    assertEquals(1, stats.running);
+    assertEquals(1, stats.queued);
+    assertEquals(1, stats.rejected);
+
+    release.countDown();
+    drain(admission, executor);
+  }
+
+  @Test
+  public void testShed() throws InterruptedException {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> rejected = Collections.synchronizedList(new ArrayList<String>());
+    Admission admission = new Admission(executor, 1, 2, AdmissionPolicy.SHED);
+
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "running"));
+    admission.submit(Admission.PRIORITY_LOW, await(release), new Recorder(rejected, "low"));
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "normal"));
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "newer"));
+    admission.submit(Admission.PRIORITY_LOW, await(release), new Recorder(rejected, "newest low"));
+
+    assertEquals(2, rejected.size());
+    assertEquals("low", rejected.get(0));
+    assertEquals("newest low", rejected.get(1));
+    // "low" made room for "newer"; nothing waiting had lower priority than "newest low", so it was refused.
+    assertEquals(1, admission.stats().shed);
+    assertEquals(1, admission.stats().rejected);
+
+    release.countDown();
+    drain(admission, executor);
+  }
+
+  @Test
+  public void testShedWithoutQueue() throws InterruptedException {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> rejected = Collections.synchronizedList(new ArrayList<String>());
+    Admission admission = new Admission(executor, 1, 0, AdmissionPolicy.SHED);
+
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "running"));
+    admission.submit(Admission.PRIORITY_NORMAL, await(release), new Recorder(rejected, "refused"));
+
+    // Nothing waiting to drop, so the new operation is refused.
+    assertEquals(Collections.singletonList("refused"), rejected);
+    assertEquals(0, admission.stats().shed);
+    assertEquals(1, admission.stats().rejected);
+
+    release.countDown();
+    drain(admission, executor);
+  }
+
+  @Test
+  public void testBlock() throws InterruptedException {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    final AtomicInteger completed = new AtomicInteger();
+    final Admission admission = new Admission(executor, 2, 2, AdmissionPolicy.BLOCK);
+    final List<String> rejected = Collections.synchronizedList(new ArrayList<String>());
+
+    for (int i = 0; i < 100; i++) {
+      admission.submit(Admission.PRIORITY_NORMAL, new Runnable() {
+        @Override
+        public void run() {
+          completed.incrementAndGet();
+        }
+      }, new Recorder(rejected, "task"));
+      assertTrue(admission.stats().queued <= 2);
+    }
+
+    drain(admission, executor);
+    assertEquals(100, completed.get());
+    assertTrue(rejected.isEmpty());
+  }
+}
@@ -0,0 +1,100 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+
+public class BufferedRandomTest {
+  // Counts calls, and fills with a counter so that any byte handed out twice is detectable.
+  private static class Counting extends BufferedRandom {
+    int fills = 0;
+    int next = 0;
+
+    Counting(int bufferSize) {
+      super(bufferSize);
+    }
+
+    @Override
+    protected void fill(byte[] bytes) {
+      fills++;
+      for (int i = 0; i < bytes.length; i++) {
+        if ((i & 3) == 0)
+          next++;
+        bytes[i] = (byte) (next >>> ((i & 3) << 3));
+      }
+    }
+  }
+
+  @Test
+  public void testBuffers() {
+    Counting random = new Counting(1024);
+    Set<Integer> seen = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      byte[] bytes = random.randomBytes(32);
+      assertEquals(32, bytes.length);
+      for (int j = 0; j < 32; j += 4)
+        assertTrue(seen.add((bytes[j] & 0xff) | (bytes[j + 1] & 0xff) << 8 | (bytes[j + 2] & 0xff) << 16 | (bytes[j + 3] & 0xff) << 24));
+    }
+    // 32 requests per buffer.
+    assertTrue(random.fills <= 1000 / 32 + 1);
+  }
+
+  @Test
+  public void testLargeRequests() {
+    Counting random = new Counting(1024);
+    random.randomBytes(257);
+    random.randomBytes(4096);
+    assertEquals(2, random.fills);
+    assertEquals(0, random.randomBytes(0).length);
+    assertEquals(2, random.fills);
+  }
+
+  @Test
+  public void testReseed() {
+    Counting random = new Counting(1024);
+    random.randomBytes(24);
+    random.randomBytes(24);
+    assertEquals(1, random.fills);
+    random.reseed();
+    random.randomBytes(24);
+    assertEquals(2, random.fills);
+  }
+
+  @Test
+  public void testUnbuffered() {
+    Counting random = new Counting(0);
+    random.randomBytes(24);
+    random.randomBytes(24);
+    assertEquals(2, random.fills);
+  }
+
+  @Test
+  public void testFailedFill() {
+    BufferedRandom random = new BufferedRandom(1024) {
+      boolean fail = true;
+
+      @Override
+      protected void fill(byte[] bytes) {
+        if (fail) {
+          fail = false;
+          throw new IllegalStateException("no entropy");
+        }
+        for (int i = 0; i < bytes.length; i++)
+          bytes[i] = 1;
+      }
+    };
+    try {
+      random.randomBytes(24);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    // Nothing handed out from the unfilled buffer.
+    byte[] bytes = random.randomBytes(24);
+    for (byte b : bytes)
+      assertEquals(1, b);
+  }
+}
@@ -0,0 +1,119 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.crypto.JavaCrypto;
+import com.tozny.e3db.crypto.KaliumCrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.*;
+
+public class CryptoProvidersTest {
+  private static CryptoProvider provider(final String name, final int priority, final RuntimeException failure) {
+    return new CryptoProvider() {
+      @Override
+      public String name() {
+        return name;
+      }
+
+      @Override
+      public int priority() {
+        return priority;
+      }
+
+      @Override
+      public Crypto create() {
+        if (failure != null)
+          throw failure;
+        return new JavaCrypto();
+      }
+    };
+  }
+
+  @Test
+  public void testAvailable() {
+    // Native first, by priority.
+    assertEquals(Arrays.asList("kalium", "java"), CryptoProviders.available());
+    assertTrue(CryptoProviders.preferred() instanceof KaliumCrypto);
+    assertTrue(CryptoProviders.get("java") instanceof JavaCrypto);
+    assertSame(CryptoProviders.get("kalium"), CryptoProviders.preferred());
+  }
+
+  @Test
+  public void testUnknownProvider() {
+    try {
+      CryptoProviders.get("nope");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("nope"));
+    }
+  }
+
+  @Test
+  public void testFastest() {
+    Crypto fastest = CryptoProviders.fastest(1024);
+    assertTrue(CryptoProviders.available().size() == 2);
+    assertTrue(fastest == CryptoProviders.get("kalium") || fastest == CryptoProviders.get("java"));
+    // Remembered per size.
+    assertSame(fastest, CryptoProviders.fastest(1024));
+  }
+
+  @Test
+  public void testCheck() {
+    CryptoProviders.check(new JavaCrypto());
+
+    Crypto broken = new JavaCrypto() {
+      @Override
+      public CipherWithNonce encryptSecretBox(byte[] message, byte[] key) {
+        CipherWithNonce box = super.encryptSecretBox(message, key);
+        byte[] cipher = box.getCipher();
+        cipher[cipher.length - 1] ^= 1;
+        return new CipherWithNonce(cipher, box.getNonce());
+      }
+    };
+    try {
+      CryptoProviders.check(broken);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+
+    try {
+      new ClientBuilder().setCrypto(broken);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testFailureReported() {
+    RuntimeException missing = new IllegalStateException("no libsodium");
+    CryptoProviders.Registry registry = new CryptoProviders.Registry(Arrays.asList(
+      provider("native", 100, missing), provider("java", 0, null)));
+    assertTrue(registry.preferred() instanceof JavaCrypto);
+    try {
+      registry.get("native");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertSame(missing, e.getCause());
+      assertTrue(e.getMessage().contains("native"));
+      assertTrue(e.getMessage().contains("no libsodium"));
+    }
+
+    RuntimeException other = new UnsupportedOperationException("no platform");
+    CryptoProviders.Registry none = new CryptoProviders.Registry(Arrays.asList(
+      provider("native", 100, missing), provider("other", 0, other)));
+    try {
+      none.preferred();
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertSame(missing, e.getCause());
+      assertEquals(Collections.<Throwable>singletonList(other), Arrays.asList(e.getSuppressed()));
+      assertTrue(e.getMessage().contains("native"));
+      assertTrue(e.getMessage().contains("other"));
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+public class FairShareExecutorTest {
+  private static Runnable record(final List<String> order, final String name, final CountDownLatch done) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        order.add(name);
+        done.countDown();
+      }
+    };
+  }
+
+  @Test
+  public void testRoundRobin() throws InterruptedException {
+    FairShareExecutor pool = new FairShareExecutor(1);
+    Executor bulk = pool.newLane();
+    Executor interactive = pool.newLane();
+    final CountDownLatch gate = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(11);
+    List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    // Occupy the only worker so everything below queues up.
+    bulk.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+
+    for (int i = 0; i < 10; i++)
+      bulk.execute(record(order, "bulk", done));
+    interactive.execute(record(order, "interactive", done));
+
+    gate.countDown();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(order.indexOf("interactive") <= 1);
+    pool.shutdown();
+  }
+}
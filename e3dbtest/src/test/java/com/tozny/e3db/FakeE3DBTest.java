@@ -0,0 +1,263 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.fake.FakeE3DB;
+import com.tozny.e3db.fake.FakeE3DBServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+import static junit.framework.Assert.*;
+
+public class FakeE3DBTest {
+  private static Client newClient(String host, Transport transport) throws Exception {
+    String privateKey = Client.newPrivateKey();
+    ResultFuture<ClientCredentials> registered = new ResultFuture<>();
+    Client.register("token", "test", Client.getPublicKey(privateKey), host, transport, registered.completer());
+    return new ClientBuilder()
+      .fromCredentials(registered.get(), privateKey)
+      .setHost(host)
+      .setTransport(transport)
+      .build();
+  }
+
+  private static RecordData data(String value) {
+    return new RecordData(Collections.singletonMap("field", value));
+  }
+
+  @Test
+  public void testWriteReadQuery() throws Exception {
+    FakeE3DB e3db = new FakeE3DB();
+    Client client = newClient("https://example.com", e3db.transport());
+
+    Record written = client.writeAsync("test", data("secret"), Collections.singletonMap("plain", "text")).get();
+    Record read = client.readAsync(written.meta().recordId()).get();
+    assertEquals("secret", read.data().get("field"));
+    assertEquals("text", read.meta().plain().get("plain"));
+
+    for (int i = 0; i < 4; i++)
+      client.writeAsync("test", data(Integer.toString(i)), null).get();
+
+    // Pages of two records, following last_index.
+    Set<String> seen = new HashSet<>();
+    QueryParams params = new QueryParamsBuilder().setTypes("test").setIncludeData(true).setCount(2).build();
+    QueryResponse page = client.queryAsync(params).get();
+    while (!page.records().isEmpty()) {
+      assertTrue(page.records().size() <= 2);
+      for (Record record : page.records())
+        seen.add(record.data().get("field"));
+      page = client.queryAsync(params.buildOn().setAfter(page.last()).build()).get();
+    }
+    assertEquals(5, seen.size());
+  }
+
+  @Test
+  public void testQueryNotCountedAsLookups() throws Exception {
+    Client client = newClient("https://example.com", new FakeE3DB().transport());
+    client.writeAsync("test", data("secret"), null).get();
+    CacheStats before = client.accessKeyCacheStats();
+
+    // Query results carry their encrypted access keys, so none are looked up.
+    QueryParams params = new QueryParamsBuilder().setTypes("test").setIncludeData(true).build();
+    assertEquals(1, client.queryAsync(params).get().records().size());
+    assertEquals(1, client.queryAsync(params).get().records().size());
+    CacheStats after = client.accessKeyCacheStats();
+    assertEquals(before.misses, after.misses);
+    assertEquals(before.hits, after.hits);
+  }
+
+  @Test
+  public void testRecordBodyRepeatable() throws Exception {
+    Client client = newClient("https://example.com", new FakeE3DB().transport());
+    JsonRequestBody body = client.recordBody(new byte[32], "test", Collections.singletonMap("field", "secret"), null);
+    // A retried request must send the same ciphertext.
+    Buffer first = new Buffer();
+    Buffer second = new Buffer();
+    body.writeTo(first);
+    body.writeTo(second);
+    assertEquals(first.readByteString(), second.readByteString());
+  }
+
+  @Test
+  public void testSharing() throws Exception {
+    FakeE3DB e3db = new FakeE3DB();
+    Client writer = newClient("https://example.com", e3db.transport());
+    Client reader = newClient("https://example.com", e3db.transport());
+
+    Record written = writer.writeAsync("shared", data("secret"), null).get();
+    try {
+      reader.readAsync(written.meta().recordId()).get();
+      fail("Expected failure before sharing");
+    } catch (ExecutionException e) {
+      // expected
+    }
+
+    writer.shareAsync("shared", reader.clientId()).get();
+    assertEquals("secret", reader.readAsync(written.meta().recordId()).get().data().get("field"));
+
+    QueryParams params = new QueryParamsBuilder().setIncludeAllWriters(true).setIncludeData(true).build();
+    assertEquals(1, reader.queryAsync(params).get().records().size());
+    assertEquals(1, reader.getIncomingSharingAsync().get().size());
+  }
+
+  @Test
+  public void testMissingOwnKeyNotOverwritten() throws Exception {
+    FakeE3DB e3db = new FakeE3DB();
+    final Transport fake = e3db.transport();
+    // Answers access key lookups with 404 while set, as a lagging replica might.
+    final AtomicBoolean hideKeys = new AtomicBoolean(false);
+    Transport transport = new Transport() {
+      @Override
+      public Call.Factory callFactory(List<Interceptor> interceptors) {
+        List<Interceptor> all = new ArrayList<>();
+        all.add(new Interceptor() {
+          @Override
+          public Response intercept(Chain chain) throws IOException {
+            if (hideKeys.get() && chain.request().method().equals("GET") && chain.request().url().encodedPath().contains("/access_keys/"))
+              return InMemoryTransport.response(chain.request(), 404, null);
+            return chain.proceed(chain.request());
+          }
+        });
+        all.addAll(interceptors);
+        return fake.callFactory(all);
+      }
+    };
+
+    // Two instances with the same credentials.
+    String privateKey = Client.newPrivateKey();
+    ResultFuture<ClientCredentials> registered = new ResultFuture<>();
+    Client.register("token", "test", Client.getPublicKey(privateKey), "https://example.com", transport, registered.completer());
+    ClientBuilder builder = new ClientBuilder()
+      .fromCredentials(registered.get(), privateKey)
+      .setHost("https://example.com")
+      .setTransport(transport);
+    Client first = builder.build();
+    Client second = builder.build();
+
+    Record written = second.writeAsync("test", data("second"), null).get();
+
+    hideKeys.set(true);
+    assertTrue(first.readAsync(written.meta().recordId()).result().isError());
+    hideKeys.set(false);
+
+    // Must find the existing key, not replace it.
+    Record own = first.writeAsync("test", data("first"), null).get();
+    assertEquals("second", first.readAsync(written.meta().recordId()).get().data().get("field"));
+    assertEquals("first", second.readAsync(own.meta().recordId()).get().data().get("field"));
+  }
+
+  @Test
+  public void testErrorBodiesClosed() throws Exception {
+    FakeE3DB e3db = new FakeE3DB();
+    final Transport fake = e3db.transport();
+    // Counts error bodies opened and closed.
+    final AtomicInteger opened = new AtomicInteger();
+    final AtomicInteger closed = new AtomicInteger();
+    Transport transport = new Transport() {
+      @Override
+      public Call.Factory callFactory(List<Interceptor> interceptors) {
+        List<Interceptor> all = new ArrayList<>(interceptors);
+        all.add(new Interceptor() {
+          @Override
+          public Response intercept(Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            if (response.isSuccessful())
+              return response;
+            opened.incrementAndGet();
+            final ResponseBody body = response.body();
+            return response.newBuilder().body(new ResponseBody() {
+              @Override
+              public MediaType contentType() {
+                return body.contentType();
+              }
+
+              @Override
+              public long contentLength() {
+                return body.contentLength();
+              }
+
+              @Override
+              public BufferedSource source() {
+                return body.source();
+              }
+
+              @Override
+              public void close() {
+                closed.incrementAndGet();
+                body.close();
+              }
+            }).build();
+          }
+        });
+        return fake.callFactory(all);
+      }
+    };
+
+    String privateKey = Client.newPrivateKey();
+    ResultFuture<ClientCredentials> registered = new ResultFuture<>();
+    Client.register("token", "test", Client.getPublicKey(privateKey), "https://example.com", transport, registered.completer());
+    for (boolean nonBlocking : new boolean[] { false, true }) {
+      Client client = new ClientBuilder()
+        .fromCredentials(registered.get(), privateKey)
+        .setHost("https://example.com")
+        .setTransport(transport)
+        .setNonBlocking(nonBlocking)
+        .build();
+      Record written = client.writeAsync("test", data("secret"), null).get();
+      e3db.setErrorRate(1.0);
+      for (int i = 0; i < 5; i++)
+        assertTrue(client.readAsync(written.meta().recordId()).result().isError());
+      e3db.setErrorRate(0.0);
+    }
+    assertTrue(opened.get() >= 10);
+    assertEquals(opened.get(), closed.get());
+  }
+
+  @Test
+  public void testInjectedErrors() throws Exception {
+    FakeE3DB e3db = new FakeE3DB();
+    Client client = newClient("https://example.com", e3db.transport());
+    Record written = client.writeAsync("test", data("secret"), null).get();
+
+    e3db.setThrottleRate(1.0);
+    Result<Record> throttled = client.readAsync(written.meta().recordId()).result();
+    assertTrue(throttled.isError());
+    assertTrue(throttled.asError().other().getMessage().contains("429"));
+
+    e3db.setThrottleRate(0.0).setErrorRate(1.0);
+    assertTrue(client.readAsync(written.meta().recordId()).result().isError());
+
+    e3db.setErrorRate(0.0);
+    assertEquals("secret", client.readAsync(written.meta().recordId()).get().data().get("field"));
+  }
+
+  @Test
+  public void testServer() throws Exception {
+    FakeE3DBServer server = FakeE3DBServer.start(new FakeE3DB());
+    try {
+      Client client = newClient(server.url(), HttpTransport.shared());
+      Map<String, String> fields = Collections.singletonMap("field", "secret");
+      Record written = client.writeAsync("test", new RecordData(fields), null).get();
+      assertEquals(fields, client.readAsync(written.meta().recordId()).get().data());
+    } finally {
+      server.stop();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static junit.framework.Assert.*;
+
+public class InMemoryTransportTest {
+  private static final Interceptor addHeader = new Interceptor() {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      return chain.proceed(chain.request().newBuilder().addHeader("Authorization", "Bearer test").build());
+    }
+  };
+
+  private static Transport echoAuthorization() {
+    return new InMemoryTransport(new InMemoryTransport.Handler() {
+      @Override
+      public Response handle(Request request) {
+        return InMemoryTransport.response(request, 200, "\"" + request.header("Authorization") + "\"");
+      }
+    });
+  }
+
+  @Test
+  public void testExecute() throws IOException {
+    Call.Factory calls = echoAuthorization().callFactory(Collections.singletonList(addHeader));
+    Response response = calls.newCall(new Request.Builder().url("https://example.com/v1/test").build()).execute();
+    assertEquals(200, response.code());
+    assertEquals("\"Bearer test\"", response.body().string());
+  }
+
+  @Test
+  public void testEnqueue() throws InterruptedException {
+    Call.Factory calls = echoAuthorization().callFactory(Collections.<Interceptor>emptyList());
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicReference<String> body = new AtomicReference<>();
+    calls.newCall(new Request.Builder().url("https://example.com/v1/test").build()).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        done.countDown();
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) throws IOException {
+        body.set(response.body().string());
+        done.countDown();
+      }
+    });
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals("\"null\"", body.get());
+  }
+
+  @Test
+  public void testHandlerFailure() {
+    Transport transport = new InMemoryTransport(new InMemoryTransport.Handler() {
+      @Override
+      public Response handle(Request request) throws IOException {
+        throw new IOException("unavailable");
+      }
+    });
+    try {
+      transport.callFactory(Collections.<Interceptor>emptyList())
+        .newCall(new Request.Builder().url("https://example.com/v1/test").build()).execute();
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("unavailable", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.*;
+
+public class Iso8601Test {
+  private static SimpleDateFormat utcFormat() {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return format;
+  }
+
+  @Test
+  public void testServerFormat() throws ParseException {
+    assertEquals(utcFormat().parse("2017-06-21T22:50:42.437"), Iso8601.parse("2017-06-21T22:50:42.437694Z"));
+    assertEquals(utcFormat().parse("2017-06-21T22:50:42.437"), Iso8601.parse("2017-06-21T22:50:42.437694"));
+    assertEquals(0L, Iso8601.parseMillis("1970-01-01T00:00:00.000000Z"));
+    assertEquals(951782400000L, Iso8601.parseMillis("2000-02-29T00:00:00Z"));
+    assertEquals(500L, Iso8601.parseMillis("1970-01-01T00:00:00.5Z"));
+    assertEquals(3600000L, Iso8601.parseMillis("1970-01-01T02:00:00+01:00"));
+  }
+
+  @Test
+  public void testMatchesSimpleDateFormat() throws ParseException {
+    SimpleDateFormat format = utcFormat();
+    Random random = new Random(1);
+    for (int i = 0; i < 10000; i++) {
+      Date date = new Date((long) (random.nextDouble() * 4102444800000L));
+      String text = format.format(date) + "123Z";
+      assertEquals(text, date.getTime(), Iso8601.parseMillis(text));
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    String[] invalid = {"", "2017-06-21", "2017-06-21 22:50:42.437694Z", "2017-13-01T00:00:00Z", "2017-02-29T00:00:00Z",
+      "2017-06-21T24:00:00Z", "2017-06-21T22:50:42.Z", "2017-06-21T22:50:42.437694X", "2017-06-2xT22:50:42Z"};
+    for (String text : invalid) {
+      try {
+        Iso8601.parse(text);
+        fail("Expected failure: " + text);
+      } catch (ParseException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      final int seed = t;
+      results.add(pool.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          SimpleDateFormat format = utcFormat();
+          Random random = new Random(seed);
+          for (int i = 0; i < 20000; i++) {
+            Date date = new Date((long) (random.nextDouble() * 4102444800000L));
+            if (Iso8601.parseMillis(format.format(date) + "000Z") != date.getTime())
+              return false;
+          }
+          return true;
+        }
+      }));
+    }
+    for (Future<Boolean> result : results)
+      assertTrue(result.get());
+    pool.shutdown();
+  }
+}
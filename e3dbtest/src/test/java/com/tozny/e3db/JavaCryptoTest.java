@@ -0,0 +1,96 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.crypto.JavaCrypto;
+import com.tozny.e3db.crypto.KaliumCrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import okio.ByteString;
+
+import static junit.framework.Assert.*;
+
+public class JavaCryptoTest {
+  private static final Crypto java = new JavaCrypto();
+  private static final Crypto kalium = new KaliumCrypto();
+  private static final int[] sizes = new int[] { 0, 1, 15, 16, 17, 31, 32, 33, 63, 64, 65, 100, 1000, 65536 };
+
+  // RFC 7748, section 6.1.
+  private static final byte[] alicePrivate = hex("77076d0a7318a57d3c16c17251b26645df4c2f87ebc0992ab177fba51db92c2a");
+  private static final byte[] alicePublic = hex("8520f0098930a754748b7ddcb43ef75a0dbf3a0d26381af4eba4a98eaa9b4e6a");
+  private static final byte[] bobPrivate = hex("5dab087e624a8a4b79e17f8b83800ee66f3bb1292618b6fd1c2f8b27ff88e0eb");
+  private static final byte[] bobPublic = hex("de9edb7d7b7dc1b4d35b61c2ece435373f8343c85b78674dadfc7e146f882b4f");
+
+  @Test
+  public void testPublicKeys() {
+    assertEquals(ByteString.of(alicePublic), ByteString.of(java.getPublicKey(alicePrivate)));
+    assertEquals(ByteString.of(bobPublic), ByteString.of(java.getPublicKey(bobPrivate)));
+
+    for (int i = 0; i < 10; i++) {
+      byte[] privateKey = java.newPrivateKey();
+      assertEquals(ByteString.of(kalium.getPublicKey(privateKey)), ByteString.of(java.getPublicKey(privateKey)));
+    }
+  }
+
+  @Test
+  public void testSharedKeys() {
+    assertEquals(ByteString.of(kalium.precomputeBoxKey(bobPublic, alicePrivate)),
+      ByteString.of(java.precomputeBoxKey(bobPublic, alicePrivate)));
+    assertEquals(ByteString.of(java.precomputeBoxKey(alicePublic, bobPrivate)),
+      ByteString.of(java.precomputeBoxKey(bobPublic, alicePrivate)));
+  }
+
+  @Test
+  public void testSecretBoxesInteroperate() {
+    Random r = new Random(1);
+    byte[] key = java.newSecretKey();
+    for (int size : sizes) {
+      byte[] message = new byte[size];
+      r.nextBytes(message);
+
+      CipherWithNonce fromJava = java.encryptSecretBox(message, key);
+      assertEquals(size + 16, fromJava.getCipher().length);
+      assertTrue(Arrays.equals(message, kalium.decryptSecretBox(fromJava, key)));
+
+      CipherWithNonce fromKalium = kalium.encryptSecretBox(message, key);
+      assertTrue(Arrays.equals(message, java.decryptSecretBox(fromKalium, key)));
+    }
+  }
+
+  @Test
+  public void testBoxesInteroperate() {
+    Random r = new Random(2);
+    for (int size : sizes) {
+      byte[] message = new byte[size];
+      r.nextBytes(message);
+
+      CipherWithNonce fromJava = java.encryptBox(message, bobPublic, alicePrivate);
+      assertTrue(Arrays.equals(message, kalium.decryptBox(fromJava, alicePublic, bobPrivate)));
+
+      CipherWithNonce fromKalium = kalium.encryptBox(message, alicePublic, bobPrivate);
+      assertTrue(Arrays.equals(message, java.decryptBox(fromKalium, bobPublic, alicePrivate)));
+    }
+  }
+
+  @Test
+  public void testTampering() {
+    byte[] key = java.newSecretKey();
+    CipherWithNonce box = java.encryptSecretBox("a message".getBytes(), key);
+    for (int i = 0; i < box.getCipher().length; i++) {
+      byte[] tampered = box.getCipher().clone();
+      tampered[i] ^= 1;
+      try {
+        java.decryptSecretBox(new CipherWithNonce(tampered, box.getNonce()), key);
+        fail("Decrypted a tampered box.");
+      } catch (RuntimeException e) {
+        // Expected.
+      }
+    }
+  }
+
+  private static byte[] hex(String hex) {
+    return ByteString.decodeHex(hex).toByteArray();
+  }
+}
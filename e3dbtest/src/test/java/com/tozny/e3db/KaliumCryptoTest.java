@@ -0,0 +1,80 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.crypto.KaliumCrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class KaliumCryptoTest {
+  private static final Crypto crypto = new KaliumCrypto();
+
+  @Test
+  public void testBatchOneKey() {
+    byte[] key = crypto.newSecretKey();
+    List<byte[]> messages = Arrays.asList("a".getBytes(), new byte[0], "a longer message".getBytes());
+    List<CipherWithNonce> ciphers = crypto.encryptSecretBoxes(messages, Collections.singletonList(key));
+    assertEquals(3, ciphers.size());
+    assertFalse(Arrays.equals(ciphers.get(0).getNonce(), ciphers.get(1).getNonce()));
+
+    // Interoperates with the single-message methods.
+    for (int i = 0; i < messages.size(); i++)
+      assertTrue(Arrays.equals(messages.get(i), crypto.decryptSecretBox(ciphers.get(i), key)));
+    List<byte[]> plains = crypto.decryptSecretBoxes(ciphers, Collections.singletonList(key));
+    for (int i = 0; i < messages.size(); i++)
+      assertTrue(Arrays.equals(messages.get(i), plains.get(i)));
+  }
+
+  @Test
+  public void testBatchKeyPerMessage() {
+    List<byte[]> keys = crypto.newSecretKeys(2);
+    assertEquals(2, keys.size());
+    assertFalse(Arrays.equals(keys.get(0), keys.get(1)));
+
+    List<byte[]> messages = Arrays.asList("one".getBytes(), "two".getBytes());
+    List<CipherWithNonce> ciphers = crypto.encryptSecretBoxes(messages, keys);
+    assertTrue(Arrays.equals(messages.get(1), crypto.decryptSecretBox(ciphers.get(1), keys.get(1))));
+
+    try {
+      crypto.decryptSecretBoxes(ciphers, Arrays.asList(keys.get(1), keys.get(0)));
+      fail("Decrypted with the wrong keys.");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+
+    try {
+      crypto.encryptSecretBoxes(messages, Arrays.asList(keys.get(0), keys.get(1), keys.get(0)));
+      fail("Accepted a key count that does not match.");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testByteBuffers() {
+    byte[] key = crypto.newSecretKey();
+    byte[] message = "a message in a buffer".getBytes();
+    ByteBuffer source = ByteBuffer.allocateDirect(message.length + 4);
+    source.put(new byte[4]).put(message).flip();
+    source.position(4);
+
+    CipherWithNonce cipher = crypto.encryptSecretBox(source, key);
+    assertFalse(source.hasRemaining());
+    assertTrue(Arrays.equals(message, crypto.decryptSecretBox(cipher, key)));
+
+    ByteBuffer destination = ByteBuffer.allocateDirect(64);
+    destination.put((byte) 1);
+    assertEquals(message.length, crypto.decryptSecretBox(cipher, key, destination));
+    assertEquals(1 + message.length, destination.position());
+    byte[] decrypted = new byte[message.length];
+    destination.flip();
+    destination.get();
+    destination.get(decrypted);
+    assertTrue(Arrays.equals(message, decrypted));
+  }
+}
@@ -0,0 +1,64 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static junit.framework.Assert.*;
+
+public class ParallelTest {
+  @Test
+  public void testRunsEveryIndexOnce() {
+    ExecutorService pool = Executors.newFixedThreadPool(3);
+    final AtomicIntegerArray seen = new AtomicIntegerArray(1000);
+    Parallel.forEach(pool, 4, seen.length(), new Parallel.Body() {
+      @Override
+      public void run(int i) {
+        seen.incrementAndGet(i);
+      }
+    });
+
+    for (int i = 0; i < seen.length(); i++)
+      assertEquals(1, seen.get(i));
+    pool.shutdown();
+  }
+
+  @Test
+  public void testBusyExecutor() {
+    // Helpers never run; the caller must do all the work.
+    Executor stalled = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+      }
+    };
+    final AtomicIntegerArray seen = new AtomicIntegerArray(10);
+    Parallel.forEach(stalled, 4, seen.length(), new Parallel.Body() {
+      @Override
+      public void run(int i) {
+        seen.incrementAndGet(i);
+      }
+    });
+
+    for (int i = 0; i < seen.length(); i++)
+      assertEquals(1, seen.get(i));
+  }
+
+  @Test
+  public void testFailure() {
+    try {
+      Parallel.forEach(Executors.newSingleThreadExecutor(), 2, 10, new Parallel.Body() {
+        @Override
+        public void run(int i) {
+          if (i == 3)
+            throw new IllegalStateException("3");
+        }
+      });
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertEquals("3", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.fake.FakeE3DB;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import static junit.framework.Assert.*;
+
+public class QueryIteratorTest {
+  private static final int RECORDS = 7;
+
+  private final FakeE3DB e3db = new FakeE3DB();
+  private final AtomicInteger searches = new AtomicInteger();
+
+  // Counts search requests.
+  private Transport transport() {
+    final Transport fake = e3db.transport();
+    return new Transport() {
+      @Override
+      public Call.Factory callFactory(List<Interceptor> interceptors) {
+        List<Interceptor> all = new ArrayList<>(interceptors);
+        all.add(new Interceptor() {
+          @Override
+          public Response intercept(Chain chain) throws IOException {
+            if (chain.request().url().encodedPath().endsWith("/search"))
+              searches.incrementAndGet();
+            return chain.proceed(chain.request());
+          }
+        });
+        return fake.callFactory(all);
+      }
+    };
+  }
+
+  private Client newClient(Executor executor) throws Exception {
+    Transport transport = transport();
+    String privateKey = Client.newPrivateKey();
+    ResultFuture<ClientCredentials> registered = new ResultFuture<>();
+    Client.register("token", "test", Client.getPublicKey(privateKey), "https://example.com", transport, registered.completer());
+    ClientBuilder builder = new ClientBuilder()
+      .fromCredentials(registered.get(), privateKey)
+      .setHost("https://example.com")
+      .setTransport(transport);
+    if (executor != null)
+      builder.setExecutor(executor);
+    Client client = builder.build();
+    for (int i = 0; i < RECORDS; i++)
+      client.writeAsync("test", new RecordData(Collections.singletonMap("field", Integer.toString(i))), null).get();
+    return client;
+  }
+
+  private static QueryParams pagesOfTwo() {
+    return new QueryParamsBuilder().setTypes("test").setIncludeData(true).setCount(2).build();
+  }
+
+  @Test
+  public void testPages() throws Exception {
+    Client client = newClient(null);
+    Set<String> seen = new HashSet<>();
+    QueryIterator records = client.queryAll(pagesOfTwo());
+    while (records.hasNext())
+      assertTrue(seen.add(records.next().data().get("field")));
+    assertEquals(RECORDS, seen.size());
+    // Four full or partial pages, then an empty one.
+    assertEquals(5, searches.get());
+    assertFalse(records.hasNext());
+  }
+
+  @Test
+  public void testSynchronousCompletion() throws Exception {
+    // Each page completes on the thread that requests it.
+    Client client = newClient(new Executor() {
+      @Override
+      public void execute(Runnable runnable) {
+        runnable.run();
+      }
+    });
+    int count = 0;
+    QueryIterator records = client.queryAll(pagesOfTwo(), 3);
+    while (records.hasNext()) {
+      records.next();
+      count++;
+    }
+    assertEquals(RECORDS, count);
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    Client client = newClient(null);
+    QueryIterator records = client.queryAll(pagesOfTwo(), 1);
+    assertTrue(records.hasNext());
+    records.next();
+    records.close();
+
+    // Only records already fetched remain: the current page, and at most one fetched ahead.
+    int remaining = 0;
+    while (records.hasNext()) {
+      records.next();
+      remaining++;
+    }
+    assertTrue(remaining <= 3);
+    // A request already started when the iterator closed may still arrive; none start after it.
+    Thread.sleep(50);
+    int fetched = searches.get();
+    Thread.sleep(50);
+    assertEquals(fetched, searches.get());
+    assertTrue(fetched <= 2);
+  }
+
+  @Test
+  public void testError() throws Exception {
+    Client client = newClient(null);
+    e3db.setErrorRate(1.0);
+    QueryIterator records = client.queryAll(pagesOfTwo());
+    try {
+      records.hasNext();
+      fail("Expected E3DBQueryException");
+    } catch (E3DBQueryException e) {
+      assertNotNull(e.getCause());
+    }
+    // Stays failed.
+    try {
+      records.next();
+      fail("Expected E3DBQueryException");
+    } catch (E3DBQueryException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.tozny.e3db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static junit.framework.Assert.*;
+
+public class ResultFutureTest {
+  private static <R> ResultHandler<R> recorder(final List<String> events, final String name) {
+    return new ResultHandler<R>() {
+      @Override
+      public void handle(Result<R> r) {
+        events.add(name + ":" + (r.isError() ? r.asError().other().getMessage() : r.asValue()));
+      }
+    };
+  }
+
+  @Test
+  public void testCompletion() throws Exception {
+    ResultFuture<String> future = new ResultFuture<>();
+    List<String> events = new ArrayList<>();
+    future.addListener(ResultFutureTest.<String>recorder(events, "first"));
+    future.addListener(ResultFutureTest.<String>recorder(events, "second"));
+    assertFalse(future.isDone());
+    assertTrue(events.isEmpty());
+
+    future.complete(new ValueResult<>("value"));
+    // Later completions are ignored.
+    future.complete(new ValueResult<>("other"));
+
+    assertTrue(future.isDone());
+    assertEquals("value", future.get());
+    assertEquals("value", future.get(1, TimeUnit.MILLISECONDS));
+    // Listeners run once, in the order added.
+    assertEquals(Arrays.asList("first:value", "second:value"), events);
+  }
+
+  @Test
+  public void testListenerAfterCompletion() throws Exception {
+    ResultFuture<String> future = ResultFuture.completed(new ValueResult<>("value"));
+    List<String> events = new ArrayList<>();
+    future.addListener(ResultFutureTest.<String>recorder(events, "late"));
+    // Runs immediately, on the calling thread.
+    assertEquals(Arrays.asList("late:value"), events);
+
+    final List<Runnable> queued = new ArrayList<>();
+    future.addListener(ResultFutureTest.<String>recorder(events, "executor"), new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        queued.add(command);
+      }
+    });
+    assertEquals(1, events.size());
+    queued.get(0).run();
+    assertEquals(Arrays.asList("late:value", "executor:value"), events);
+  }
+
+  @Test
+  public void testGetTimeoutAndCancel() throws Exception {
+    ResultFuture<String> future = new ResultFuture<>();
+    try {
+      future.get(10, TimeUnit.MILLISECONDS);
+      fail("Expected TimeoutException");
+    } catch (TimeoutException e) {
+      // Expected.
+    }
+    assertFalse(future.cancel(true));
+    assertFalse(future.isCancelled());
+    assertFalse(future.isDone());
+  }
+
+  @Test
+  public void testError() throws Exception {
+    ResultFuture<String> future = new ResultFuture<>();
+    future.complete(new ErrorResult<String>(new IllegalStateException("failed")));
+    try {
+      future.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertEquals("failed", e.getCause().getMessage());
+    }
+    assertTrue(future.result().isError());
+  }
+
+  @Test
+  public void testMap() throws Exception {
+    ResultFuture<String> future = new ResultFuture<>();
+    ResultFuture<Integer> length = future.map(new ResultFuture.Transform<String, Integer>() {
+      @Override
+      public Integer apply(String value) {
+        return value.length();
+      }
+    });
+    assertFalse(length.isDone());
+    future.complete(new ValueResult<>("four"));
+    assertEquals(4, (int) length.get());
+
+    // Errors pass through unchanged, without calling the transform.
+    ResultFuture<String> failed = ResultFuture.completed(new ErrorResult<String>(new IllegalStateException("failed")));
+    ResultFuture<Integer> mapped = failed.map(new ResultFuture.Transform<String, Integer>() {
+      @Override
+      public Integer apply(String value) {
+        throw new AssertionError("not called");
+      }
+    });
+    assertEquals("failed", mapped.result().asError().other().getMessage());
+
+    // Exceptions from the transform fail the result.
+    ResultFuture<Integer> thrown = ResultFuture.completed(new ValueResult<>("x")).map(new ResultFuture.Transform<String, Integer>() {
+      @Override
+      public Integer apply(String value) throws Exception {
+        throw new Exception("transform");
+      }
+    });
+    assertEquals("transform", thrown.result().asError().other().getMessage());
+  }
+
+  @Test
+  public void testFlatMap() throws Exception {
+    final ResultFuture<Integer> inner = new ResultFuture<>();
+    ResultFuture<String> outer = new ResultFuture<>();
+    ResultFuture<Integer> chained = outer.flatMap(new ResultFuture.Transform<String, ResultFuture<Integer>>() {
+      @Override
+      public ResultFuture<Integer> apply(String value) {
+        return inner;
+      }
+    });
+
+    outer.complete(new ValueResult<>("value"));
+    // Waits for the inner future.
+    assertFalse(chained.isDone());
+    inner.complete(new ValueResult<>(7));
+    assertEquals(7, (int) chained.get());
+
+    // An error from the inner future passes through.
+    ResultFuture<Integer> innerFailed = ResultFuture.completed(new ValueResult<>("value")).flatMap(new ResultFuture.Transform<String, ResultFuture<Integer>>() {
+      @Override
+      public ResultFuture<Integer> apply(String value) {
+        return ResultFuture.completed(new ErrorResult<Integer>(new IllegalStateException("inner")));
+      }
+    });
+    assertEquals("inner", innerFailed.result().asError().other().getMessage());
+
+    // A null future from the transform is an error.
+    ResultFuture<Integer> nulled = ResultFuture.completed(new ValueResult<>("value")).flatMap(new ResultFuture.Transform<String, ResultFuture<Integer>>() {
+      @Override
+      public ResultFuture<Integer> apply(String value) {
+        return null;
+      }
+    });
+    assertTrue(nulled.result().asError().other() instanceof NullPointerException);
+
+    // An error from the outer future skips the transform.
+    ResultFuture<Integer> outerFailed = ResultFuture.completed(new ErrorResult<String>(new IllegalStateException("outer"))).flatMap(new ResultFuture.Transform<String, ResultFuture<Integer>>() {
+      @Override
+      public ResultFuture<Integer> apply(String value) {
+        throw new AssertionError("not called");
+      }
+    });
+    assertEquals("outer", outerFailed.result().asError().other().getMessage());
+  }
+
+  @Test
+  public void testAll() throws Exception {
+    ResultFuture<String> a = new ResultFuture<>();
+    ResultFuture<String> b = new ResultFuture<>();
+    ResultFuture<List<String>> all = ResultFuture.all(Arrays.asList(a, b));
+
+    // Completion order does not change the order of values.
+    b.complete(new ValueResult<>("b"));
+    assertFalse(all.isDone());
+    a.complete(new ValueResult<>("a"));
+    assertEquals(Arrays.asList("a", "b"), all.get());
+
+    assertTrue(ResultFuture.all(new ArrayList<ResultFuture<String>>()).get().isEmpty());
+  }
+
+  @Test
+  public void testAllFailure() throws Exception {
+    ResultFuture<String> a = new ResultFuture<>();
+    ResultFuture<String> b = new ResultFuture<>();
+    ResultFuture<String> c = new ResultFuture<>();
+    ResultFuture<List<String>> all = ResultFuture.all(Arrays.asList(a, b, c));
+
+    a.complete(new ValueResult<>("a"));
+    b.complete(new ErrorResult<String>(new IllegalStateException("first")));
+    // Fails as soon as one fails, without waiting for the rest.
+    assertTrue(all.isDone());
+    c.complete(new ErrorResult<String>(new IllegalStateException("second")));
+    assertEquals("first", all.result().asError().other().getMessage());
+  }
+}
@@ -0,0 +1,65 @@
+package com.tozny.e3db;
+
+import com.tozny.e3db.crypto.KaliumCrypto;
+
+import org.abstractj.kalium.crypto.Box;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.*;
+
+public class SharedKeyCacheTest {
+  private static final Crypto crypto = new KaliumCrypto();
+  private static final byte[] message = "a secret".getBytes();
+
+  @Test
+  public void testEviction() {
+    SharedKeyCache cache = new SharedKeyCache(2);
+    byte[] privateKey = new byte[] { 1 };
+    byte[] a = new byte[] { 2 }, b = new byte[] { 3 }, c = new byte[] { 4 };
+    cache.put(a, privateKey, a);
+    cache.put(b, privateKey, b);
+    // Touch a, so b is the least-recently used.
+    assertSame(a, cache.get(a, privateKey));
+    cache.put(c, privateKey, c);
+
+    assertEquals(2, cache.size());
+    assertSame(a, cache.get(a, privateKey));
+    assertNull(cache.get(b, privateKey));
+    assertSame(c, cache.get(c, privateKey));
+    // Keyed by both keys.
+    assertNull(cache.get(a, new byte[] { 5 }));
+  }
+
+  @Test
+  public void testDisabled() {
+    SharedKeyCache cache = new SharedKeyCache(0);
+    cache.put(new byte[] { 1 }, new byte[] { 2 }, new byte[] { 3 });
+    assertNull(cache.get(new byte[] { 1 }, new byte[] { 2 }));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testPrecomputedMatchesBox() {
+    byte[] senderKey = crypto.newPrivateKey();
+    byte[] recipientKey = crypto.newPrivateKey();
+    byte[] senderPublicKey = crypto.getPublicKey(senderKey);
+    byte[] recipientPublicKey = crypto.getPublicKey(recipientKey);
+
+    // Both sides compute the same shared key.
+    byte[] sharedKey = crypto.precomputeBoxKey(recipientPublicKey, senderKey);
+    assertTrue(Arrays.equals(sharedKey, crypto.precomputeBoxKey(senderPublicKey, recipientKey)));
+
+    CipherWithNonce precomputed = crypto.encryptBoxPrecomputed(message, sharedKey);
+    assertTrue(Arrays.equals(message, new Box(senderPublicKey, recipientKey).decrypt(precomputed.getNonce(), precomputed.getCipher())));
+    assertTrue(Arrays.equals(message, new KaliumCrypto(0).decryptBox(precomputed, senderPublicKey, recipientKey)));
+
+    byte[] nonce = new byte[24];
+    CipherWithNonce boxed = new CipherWithNonce(new Box(recipientPublicKey, senderKey).encrypt(nonce, message), nonce);
+    assertTrue(Arrays.equals(message, crypto.decryptBoxPrecomputed(boxed, sharedKey)));
+    // Twice, to go through the cached shared key.
+    assertTrue(Arrays.equals(message, crypto.decryptBox(boxed, senderPublicKey, recipientKey)));
+    assertTrue(Arrays.equals(message, crypto.decryptBox(boxed, senderPublicKey, recipientKey)));
+  }
+}